@@ -2,13 +2,18 @@ package com.dkg.qrservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 
 
 @SpringBootApplication
 public class QrserviceApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(QrserviceApplication.class, args);
+		ConfigurableApplicationContext context = SpringApplication.run(QrserviceApplication.class, args);
+		if (context.getEnvironment().getProperty("qr.cds.training-run", Boolean.class, false)) {
+			// The CDS training run has served its request: shut down so the JVM writes the archive.
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 }
@@ -0,0 +1,34 @@
+package com.dkg.qrservice.config;
+
+import com.dkg.qrservice.service.QRCodeRequestKey;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class QRCodeCacheConfig {
+
+    // Rough per-entry cost of the key, the cache node and the array header.
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    /**
+     * Rendered images keyed by request. Caffeine's W-TinyLFU eviction admits new entries by access
+     * frequency, so a one-off scan over many distinct codes does not flush the popular ones.
+     */
+    @Bean
+    public Cache<QRCodeRequestKey, byte[]> qrCodeCache(
+            @Value("${qr.cache.maximum-weight-bytes:67108864}") long maximumWeightBytes,
+            @Value("${qr.cache.expire-after-write:PT1H}") Duration expireAfterWrite) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maximumWeightBytes)
+                .weigher((QRCodeRequestKey key, byte[] image) ->
+                        ENTRY_OVERHEAD_BYTES + 2 * key.getContent().length() + image.length)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+}
@@ -0,0 +1,63 @@
+package com.dkg.qrservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class QRCodeExecutorConfig {
+
+    /**
+     * Fixed pool that runs all QR encoding and image compression, sized to the cores so CPU-bound
+     * work never oversubscribes them however many request threads are waiting. When the bounded
+     * queue is full, new work is rejected instead of queueing without limit.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor qrEncodingExecutor(@Value("${qr.encoding.threads:0}") int threads,
+                                                 @Value("${qr.encoding.queue-capacity:256}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("qr-encode-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.prestartAllCoreThreads();
+        return executor;
+    }
+
+    /**
+     * Bounded pool that streams batch ZIPs. A batch holds its thread for up to qr.batch.timeout, so
+     * batches get threads of their own and never starve the short streaming writes on the application
+     * task executor. When every thread is busy and the queue is full, new batches are rejected.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor qrBatchExecutor(@Value("${qr.batch.threads:2}") int threads,
+                                                  @Value("${qr.batch.queue-capacity:8}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("qr-batch-");
+        return executor;
+    }
+
+    /**
+     * Boot only auto-configures its task executor when no other Executor bean exists. Declare it here
+     * so Spring MVC keeps using it for async request processing such as streaming responses, which
+     * block on I/O and must not occupy the encoding pool.
+     */
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+}
@@ -0,0 +1,73 @@
+package com.dkg.qrservice.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lower-cases the "format" request parameter before handler mapping, so format=SVG reaches the SVG
+ * handlers like format=svg and every other format is checked in its normalised form. On the servlet
+ * stack SVG needs handler methods of its own, because Spring MVC picks the streaming return value
+ * handler from the declared return type.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class QRCodeFormatParameterFilter extends OncePerRequestFilter {
+
+    private static final String FORMAT = "format";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String[] formats = request.getParameterValues(FORMAT);
+        if (formats == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String[] normalized = new String[formats.length];
+        boolean changed = false;
+        for (int i = 0; i < formats.length; i++) {
+            normalized[i] = formats[i].toLowerCase(Locale.ROOT);
+            changed |= !normalized[i].equals(formats[i]);
+        }
+        filterChain.doFilter(changed ? new FormatRequest(request, normalized) : request, response);
+    }
+
+    private static final class FormatRequest extends HttpServletRequestWrapper {
+
+        private final String[] formats;
+
+        FormatRequest(HttpServletRequest request, String[] formats) {
+            super(request);
+            this.formats = formats;
+        }
+
+        @Override
+        public String getParameter(String name) {
+            return FORMAT.equals(name) ? formats[0] : super.getParameter(name);
+        }
+
+        @Override
+        public String[] getParameterValues(String name) {
+            return FORMAT.equals(name) ? formats.clone() : super.getParameterValues(name);
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            Map<String, String[]> parameters = new LinkedHashMap<>(super.getParameterMap());
+            parameters.put(FORMAT, formats.clone());
+            return Collections.unmodifiableMap(parameters);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.dkg.qrservice.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class QRCodeReactiveConfig implements WebFluxConfigurer {
+
+    /**
+     * Scheduler over the bounded encoding pool, so the reactive endpoints share its size and queue
+     * limit with everything else that encodes. Cancelled renders are interrupted.
+     */
+    @Bean
+    public Scheduler qrEncodingScheduler(@Qualifier("qrEncodingExecutor") ThreadPoolExecutor qrEncodingExecutor) {
+        return Schedulers.fromExecutorService(qrEncodingExecutor, "qr-encode");
+    }
+
+    @Override
+    public void addCorsMappings(CorsRegistry registry) {
+        registry.addMapping("/**").allowedMethods("*");
+    }
+}
@@ -0,0 +1,52 @@
+package com.dkg.qrservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Training run for the class-data sharing archive built by the "cds" Maven profile: once the
+ * application is ready, and so warmed up, it serves one QR code request to itself so the request
+ * path is loaded too. {@code QrserviceApplication.main} then closes the context and exits with
+ * {@link #getExitCode()}, and the JVM writes the archive on exit.
+ */
+@Component
+@ConditionalOnProperty(name = "qr.cds.training-run", havingValue = "true")
+public class QRCodeTrainingRun implements ApplicationListener<ApplicationReadyEvent>, ExitCodeGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(QRCodeTrainingRun.class);
+
+    // Non-zero until the request has been answered, so a run that never got ready fails the build.
+    private volatile int exitCode = 1;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        try {
+            String port = event.getApplicationContext().getEnvironment().getProperty("local.server.port");
+            URL url = new URL("http://localhost:" + port + "/downloadQRCodeContent?inputString=training&width=300&height=300");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try (InputStream response = connection.getInputStream()) {
+                response.transferTo(OutputStream.nullOutputStream());
+            }
+            log.info("Training run request answered with {}", connection.getResponseCode());
+            exitCode = 0;
+        } catch (IOException e) {
+            log.warn("Training run request failed", e);
+        }
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+}
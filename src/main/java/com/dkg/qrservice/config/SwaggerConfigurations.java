@@ -1,10 +1,14 @@
 package com.dkg.qrservice.config;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
 import springfox.documentation.spi.DocumentationType;
+import springfox.documentation.spring.web.plugins.DocumentationPluginsBootstrapper;
 import springfox.documentation.spring.web.plugins.Docket;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
@@ -20,4 +24,21 @@ public class SwaggerConfigurations {
                 .paths(PathSelectors.any())
                 .build();
     }
+
+    /**
+     * Springfox scans all request mappings when it starts, which is a noticeable part of startup.
+     * With springfox.documentation.auto-startup=false that scan runs here instead, in the background
+     * once the application is ready, so it no longer delays the first request.
+     */
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> documentationBootstrap(
+            ObjectProvider<DocumentationPluginsBootstrapper> bootstrapper) {
+        return event -> bootstrapper.ifAvailable(documentation -> {
+            if (!documentation.isRunning()) {
+                Thread thread = new Thread(documentation::start, "api-docs-bootstrap");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        });
+    }
 }
@@ -0,0 +1,73 @@
+package com.dkg.qrservice.controller;
+
+import com.dkg.qrservice.service.QRCodeBatchItem;
+import com.dkg.qrservice.service.QRCodeBatchService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class QRCodeBatchController {
+
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private static final String APPLICATION_ZIP_VALUE = "application/zip";
+
+    private final QRCodeBatchService qrCodeBatchService;
+    private final AsyncTaskExecutor batchExecutor;
+    private final Duration timeout;
+
+    public QRCodeBatchController(QRCodeBatchService qrCodeBatchService,
+                                 @Qualifier("qrBatchExecutor") AsyncTaskExecutor batchExecutor,
+                                 @Value("${qr.batch.timeout:PT30M}") Duration timeout) {
+        this.qrCodeBatchService = qrCodeBatchService;
+        this.batchExecutor = batchExecutor;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Accepts a JSON array of items or CSV lines ({@code content,width,height[,errorCorrection[,fileName]]})
+     * and streams back a ZIP with one PNG per item, in input order. Items are read from the request
+     * body while the ZIP is written, so neither side is held in memory as a whole. Large batches
+     * stream for minutes, so the ZIP is written by an async task on the bounded batch executor with
+     * its own timeout (qr.batch.timeout), apart from the executor and timeout of other async requests.
+     * The ZIP headers are set on the batch thread, so a batch rejected by a full executor gets a plain
+     * 503 rather than an attachment.
+     */
+    @PostMapping(value = "/downloadQRCodeBatch", consumes = {MediaType.APPLICATION_JSON_VALUE, TEXT_CSV_VALUE})
+    public WebAsyncTask<Void> downloadQRCodeBatch(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        InputStream body = request.getInputStream();
+        Iterator<QRCodeBatchItem> items;
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        if (MediaType.parseMediaType(TEXT_CSV_VALUE).includes(contentType)) {
+            Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+            items = qrCodeBatchService.readCsv(new InputStreamReader(body, charset));
+        } else {
+            items = qrCodeBatchService.readJson(body);
+        }
+
+        return new WebAsyncTask<>(timeout.toMillis(), batchExecutor, () -> {
+            response.setContentType(APPLICATION_ZIP_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=QR_Codes.zip");
+            qrCodeBatchService.writeZip(items, response.getOutputStream());
+            return null;
+        });
+    }
+}
@@ -0,0 +1,52 @@
+package com.dkg.qrservice.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Conditional GET for the image endpoints of both web stacks. The If-None-Match check runs before
+ * encoding, but the entity tag and the immutable caching headers are only added to the 304 and 200
+ * responses built here, never to the response itself, so shed and error responses do not carry them.
+ */
+final class QRCodeConditionalGet {
+
+    // Output is a pure function of the request parameters, so responses never go stale.
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private QRCodeConditionalGet() {
+    }
+
+    /**
+     * True if one of the If-None-Match header values lists "eTag" or is "*". Weak tags match too,
+     * as If-None-Match compares weakly.
+     */
+    static boolean isNotModified(Iterable<String> ifNoneMatch, String eTag) {
+        String quotedETag = '"' + eTag + '"';
+        for (String header : ifNoneMatch) {
+            for (String candidate : header.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(quotedETag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // 304 Not Modified, with the headers of the 200 response it stands for.
+    static ResponseEntity.BodyBuilder notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(eTag)
+                .header(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL);
+    }
+
+    static ResponseEntity.BodyBuilder ok(String eTag) {
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .header(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL);
+    }
+}
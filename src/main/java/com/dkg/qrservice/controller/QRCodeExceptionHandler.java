@@ -0,0 +1,45 @@
+package com.dkg.qrservice.controller;
+
+import com.dkg.qrservice.service.QRCodeInvalidRequestException;
+import com.dkg.qrservice.service.QRCodeOverloadedException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Answers overload with 503 and Retry-After, and requests outside the rendering limits with 400.
+ * These responses describe the request, not an image, so they are marked no-store and no shared
+ * cache keeps them.
+ */
+@RestControllerAdvice
+public class QRCodeExceptionHandler {
+
+    // The encoding pool and its queue are full; tell clients to come back rather than queueing more.
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> handleRejectedExecution(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .cacheControl(CacheControl.noStore())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Server is busy, please retry");
+    }
+
+    @ExceptionHandler(QRCodeOverloadedException.class)
+    public ResponseEntity<String> handleOverloaded(QRCodeOverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .cacheControl(CacheControl.noStore())
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body("Server is busy, please retry");
+    }
+
+    @ExceptionHandler(QRCodeInvalidRequestException.class)
+    public ResponseEntity<String> handleInvalidRequest(QRCodeInvalidRequestException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .cacheControl(CacheControl.noStore())
+                .body(e.getMessage());
+    }
+}
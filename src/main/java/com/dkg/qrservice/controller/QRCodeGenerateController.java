@@ -1,55 +1,229 @@
 package com.dkg.qrservice.controller;
 
 import com.dkg.qrservice.service.QRCodeGenerateService;
-import com.dkg.qrservice.util.DKG_WriterException;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import com.dkg.qrservice.service.QRCodeServerTiming;
+import com.dkg.qrservice.service.QRCodeStreamedImage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class QRCodeGenerateController {
 
+    // Request header asking for a Server-Timing breakdown of this request.
+    private static final String SERVER_TIMING_REQUEST_HEADER = "X-Server-Timing";
+    private static final String SERVER_TIMING = "Server-Timing";
+
+    private static final String PNG = "png";
+    private static final String SVG = "svg";
+    private static final MediaType IMAGE_SVG = MediaType.parseMediaType("image/svg+xml");
+    // Bare module matrix formats, which skip rendering and ignore width and height.
+    private static final Map<String, MediaType> MODULE_MATRIX_FORMATS = new LinkedHashMap<>();
+
+    static {
+        MODULE_MATRIX_FORMATS.put("bin", MediaType.APPLICATION_OCTET_STREAM);
+        MODULE_MATRIX_FORMATS.put("json", MediaType.APPLICATION_JSON);
+        MODULE_MATRIX_FORMATS.put("pbm", MediaType.parseMediaType("image/x-portable-bitmap"));
+    }
+
     private final QRCodeGenerateService qrCodeGenerateService;
+    private final double serverTimingSampleRate;
 
-    public QRCodeGenerateController(QRCodeGenerateService qrCodeGenerateService) {
+    public QRCodeGenerateController(QRCodeGenerateService qrCodeGenerateService,
+                                    @Value("${qr.server-timing.sample-rate:0}") double serverTimingSampleRate) {
         this.qrCodeGenerateService = qrCodeGenerateService;
+        this.serverTimingSampleRate = serverTimingSampleRate;
     }
 
+    // Both endpoints release the request thread while encoding runs on the bounded encoding pool.
+    // They serve PNG or a module matrix format (bin, json, pbm); with format=svg, in any case (see
+    // QRCodeFormatParameterFilter), the SVG handlers below take the request instead. The body is the cached image array itself, written to the
+    // response in one call with its Content-Length, without wrapping or copying it.
     @GetMapping("/downloadQRCodeImage")
-    public ResponseEntity<Resource> downloadQRCode(@RequestParam String inputString,
-                                                     @RequestParam int width, @RequestParam int height) throws IOException, DKG_WriterException {
+    public CompletableFuture<ResponseEntity<byte[]>> downloadQRCode(@RequestParam String inputString,
+                                                                    @RequestParam int width, @RequestParam int height,
+                                                                    @RequestParam(defaultValue = PNG) String format,
+                                                                    ServletWebRequest webRequest) {
+
+        String imageFormat = checkFormat(format);
+        String eTag = qrCodeGenerateService.getQRCodeETag(inputString, width, height, imageFormat);
+        if (isNotModified(webRequest, eTag)) {
+            return CompletableFuture.completedFuture(QRCodeConditionalGet.notModified(eTag).build());
+        }
+
+        QRCodeServerTiming timing = serverTiming(webRequest);
+        return qrCodeGenerateService.getQRCodeImageAsync(inputString, width, height, imageFormat, timing).thenApply(imageData -> {
+            HttpHeaders headers = new HttpHeaders();
+            headers.add(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=QR_Code." + imageFormat);
+            if (timing != null) {
+                headers.add(SERVER_TIMING, timing.toHeaderValue());
+            }
+
+            return QRCodeConditionalGet.ok(eTag).contentType(MODULE_MATRIX_FORMATS.getOrDefault(imageFormat, MediaType
+                    .APPLICATION_OCTET_STREAM))
+                    .headers(headers).body(imageData);
+        });
+    }
+
+    @GetMapping("/downloadQRCodeContent")
+    public CompletableFuture<ResponseEntity<byte[]>> downloadQRCodeByte(@RequestParam String inputString,
+                                                               @RequestParam int width, @RequestParam int height,
+                                                               @RequestParam(defaultValue = PNG) String format,
+                                                               ServletWebRequest webRequest) {
+
+        String imageFormat = checkFormat(format);
+        String eTag = qrCodeGenerateService.getQRCodeETag(inputString, width, height, imageFormat);
+        if (isNotModified(webRequest, eTag)) {
+            return CompletableFuture.completedFuture(QRCodeConditionalGet.notModified(eTag).build());
+        }
+
+        QRCodeServerTiming timing = serverTiming(webRequest);
+        return qrCodeGenerateService.getQRCodeImageAsync(inputString, width, height, imageFormat, timing).thenApply(imageData -> {
+            ResponseEntity.BodyBuilder response = QRCodeConditionalGet.ok(eTag);
+            MediaType contentType = MODULE_MATRIX_FORMATS.get(imageFormat);
+            if (contentType != null) {
+                response.contentType(contentType);
+            }
+            if (timing != null) {
+                response.header(SERVER_TIMING, timing.toHeaderValue());
+            }
+            return response.body(imageData);
+        });
+    }
 
-        Map<String, Object> res = qrCodeGenerateService.downloadQRCode(inputString, width, height);
-        ByteArrayResource resource = new ByteArrayResource((byte[]) res.get("content"));
+    @GetMapping(value = "/downloadQRCodeImage", params = "format=" + SVG)
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> downloadQRCodeSvg(
+            @RequestParam String inputString, @RequestParam int width, @RequestParam int height,
+            ServletWebRequest webRequest) {
+        return streamSvg(inputString, width, height, webRequest, "attachment; filename=QR_Code.svg");
+    }
 
-        System.out.println(res.get("fileName"));
+    @GetMapping(value = "/downloadQRCodeContent", params = "format=" + SVG)
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> downloadQRCodeSvgContent(
+            @RequestParam String inputString, @RequestParam int width, @RequestParam int height,
+            ServletWebRequest webRequest) {
+        return streamSvg(inputString, width, height, webRequest, null);
+    }
 
+    /**
+     * Encodes on the encoding pool, then streams the SVG document to the response as it is written,
+     * gzip-compressed when the client accepts it. Its size depends only on the symbol, so large pixel
+     * dimensions cost nothing extra.
+     */
+    private CompletableFuture<ResponseEntity<StreamingResponseBody>> streamSvg(
+            String inputString, int width, int height, ServletWebRequest webRequest, String contentDisposition) {
+        boolean gzip = acceptsGzip(webRequest);
+        // Each encoding of the document is a different representation with its own entity tag.
+        String eTag = qrCodeGenerateService.getQRCodeETag(inputString, width, height, SVG) + (gzip ? "-gzip" : "");
+        if (isNotModified(webRequest, eTag)) {
+            // Caches must know the 304 stands for the representation chosen by Accept-Encoding.
+            return CompletableFuture.completedFuture(QRCodeConditionalGet.notModified(eTag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build());
+        }
+
+        QRCodeServerTiming timing = serverTiming(webRequest);
+        return qrCodeGenerateService.encodeQRCodeAsync(inputString, width, height, SVG, timing).thenApply(image -> {
+            ResponseEntity.BodyBuilder response = QRCodeConditionalGet.ok(eTag)
+                    .contentType(IMAGE_SVG)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (contentDisposition != null) {
+                response.header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+            }
+            if (gzip) {
+                response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            if (timing != null) {
+                response.header(SERVER_TIMING, timing.toHeaderValue());
+            }
+            StreamingResponseBody body = outputStream -> writeImage(image, outputStream, gzip);
+            return response.body(body);
+        });
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.add(HttpHeaders.CONTENT_DISPOSITION,
-                "attachment; filename=" + res.get("fileName"));
+    private static void writeImage(QRCodeStreamedImage image, OutputStream outputStream, boolean gzip)
+            throws IOException {
+        if (!gzip) {
+            image.writeTo(outputStream);
+            return;
+        }
+        GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream);
+        image.writeTo(gzipStream);
+        // Writes the trailer; the container owns and closes the response stream.
+        gzipStream.finish();
+    }
 
-        return ResponseEntity.ok().contentType(MediaType
-                .APPLICATION_OCTET_STREAM)
-                .headers(headers).body(resource);
+    private static boolean acceptsGzip(ServletWebRequest webRequest) {
+        String acceptEncoding = webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                // "gzip;q=0" explicitly refuses it.
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
     }
 
-    @GetMapping("/downloadQRCodeContent")
-    public ByteArrayResource downloadQRCodeByte(@RequestParam String inputString,
-                                            @RequestParam int width, @RequestParam int height) throws IOException, DKG_WriterException {
+    // Lower-cased PNG or module matrix format. SVG, in any case, has been routed to its own handlers
+    // by QRCodeFormatParameterFilter.
+    private static String checkFormat(String format) {
+        String imageFormat = format.toLowerCase(Locale.ROOT);
+        if (!PNG.equals(imageFormat) && !MODULE_MATRIX_FORMATS.containsKey(imageFormat)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported format " + format
+                    + ", expected one of " + PNG + ", " + SVG + ", " + String.join(", ", MODULE_MATRIX_FORMATS.keySet()));
+        }
+        return imageFormat;
+    }
 
-        byte[] res = qrCodeGenerateService.getQRCodeImage(inputString, width, height);
+    /**
+     * A collector for the Server-Timing header when the client sent "X-Server-Timing: true" or the
+     * request was sampled (qr.server-timing.sample-rate), otherwise null.
+     */
+    private QRCodeServerTiming serverTiming(ServletWebRequest webRequest) {
+        if (Boolean.parseBoolean(webRequest.getHeader(SERVER_TIMING_REQUEST_HEADER))
+                || (serverTimingSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < serverTimingSampleRate)) {
+            return new QRCodeServerTiming();
+        }
+        return null;
+    }
 
+    /**
+     * True when the client already has this image. The entity tag is derived from the request
+     * parameters, so this is answered before any encoding.
+     */
+    private static boolean isNotModified(ServletWebRequest webRequest, String eTag) {
+        String[] ifNoneMatch = webRequest.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+        return ifNoneMatch != null && QRCodeConditionalGet.isNotModified(Arrays.asList(ifNoneMatch), eTag);
+    }
 
-        return new ByteArrayResource(res);
+    @GetMapping("/qrCodeCacheStats")
+    public Map<String, Object> qrCodeCacheStats() {
+        return qrCodeGenerateService.getCacheStatistics();
     }
 
 }
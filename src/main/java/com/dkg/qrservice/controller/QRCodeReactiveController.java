@@ -0,0 +1,280 @@
+package com.dkg.qrservice.controller;
+
+import com.dkg.qrservice.service.QRCodeBatchItem;
+import com.dkg.qrservice.service.QRCodeBatchService;
+import com.dkg.qrservice.service.QRCodeGenerateService;
+import com.dkg.qrservice.service.QRCodeServerTiming;
+import com.dkg.qrservice.service.QRCodeStreamedImage;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Non-blocking counterpart of {@link QRCodeGenerateController} and {@link QRCodeBatchController},
+ * active when the application runs on the reactive stack (the "reactive" profile). Encoding runs on
+ * the bounded encoding pool. A client that disconnects stops waiting for its image without failing
+ * identical requests that share the render.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class QRCodeReactiveController {
+
+    private static final String TEXT_CSV_VALUE = "text/csv";
+    private static final MediaType APPLICATION_ZIP = MediaType.parseMediaType("application/zip");
+
+    // Request header asking for a Server-Timing breakdown of this request.
+    private static final String SERVER_TIMING_REQUEST_HEADER = "X-Server-Timing";
+    private static final String SERVER_TIMING = "Server-Timing";
+
+    private static final String PNG = "png";
+    private static final String SVG = "svg";
+    private static final MediaType IMAGE_SVG = MediaType.parseMediaType("image/svg+xml");
+    // Bare module matrix formats, which skip rendering and ignore width and height.
+    private static final Map<String, MediaType> MODULE_MATRIX_FORMATS = new LinkedHashMap<>();
+
+    static {
+        MODULE_MATRIX_FORMATS.put("bin", MediaType.APPLICATION_OCTET_STREAM);
+        MODULE_MATRIX_FORMATS.put("json", MediaType.APPLICATION_JSON);
+        MODULE_MATRIX_FORMATS.put("pbm", MediaType.parseMediaType("image/x-portable-bitmap"));
+    }
+
+    private final QRCodeGenerateService qrCodeGenerateService;
+    private final QRCodeBatchService qrCodeBatchService;
+    private final Scheduler qrEncodingScheduler;
+    private final double serverTimingSampleRate;
+
+    public QRCodeReactiveController(QRCodeGenerateService qrCodeGenerateService,
+                                    QRCodeBatchService qrCodeBatchService,
+                                    @Qualifier("qrEncodingScheduler") Scheduler qrEncodingScheduler,
+                                    @Value("${qr.server-timing.sample-rate:0}") double serverTimingSampleRate) {
+        this.qrCodeGenerateService = qrCodeGenerateService;
+        this.qrCodeBatchService = qrCodeBatchService;
+        this.qrEncodingScheduler = qrEncodingScheduler;
+        this.serverTimingSampleRate = serverTimingSampleRate;
+    }
+
+    // Both endpoints serve PNG, SVG or a module matrix format (bin, json, pbm), like their servlet
+    // counterparts. Image arrays are wrapped into the response as they are, without copying them
+    // into new buffers.
+    @GetMapping("/downloadQRCodeImage")
+    public Mono<ResponseEntity<?>> downloadQRCode(@RequestParam String inputString,
+                                                  @RequestParam int width, @RequestParam int height,
+                                                  @RequestParam(defaultValue = PNG) String format,
+                                                  ServerWebExchange exchange) {
+
+        String imageFormat = checkFormat(format);
+        if (SVG.equals(imageFormat)) {
+            return writeSvg(inputString, width, height, exchange, "attachment; filename=QR_Code.svg");
+        }
+        String eTag = qrCodeGenerateService.getQRCodeETag(inputString, width, height, imageFormat);
+        if (isNotModified(exchange, eTag)) {
+            return Mono.just(QRCodeConditionalGet.notModified(eTag).build());
+        }
+
+        QRCodeServerTiming timing = serverTiming(exchange);
+        return renderImage(inputString, width, height, imageFormat, timing)
+                .<ResponseEntity<?>>map(imageData -> {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.add(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=QR_Code." + imageFormat);
+                    if (timing != null) {
+                        headers.add(SERVER_TIMING, timing.toHeaderValue());
+                    }
+
+                    return QRCodeConditionalGet.ok(eTag).contentType(MODULE_MATRIX_FORMATS.getOrDefault(imageFormat, MediaType
+                            .APPLICATION_OCTET_STREAM))
+                            .headers(headers).body(imageData);
+                });
+    }
+
+    @GetMapping("/downloadQRCodeContent")
+    public Mono<ResponseEntity<?>> downloadQRCodeByte(@RequestParam String inputString,
+                                                      @RequestParam int width, @RequestParam int height,
+                                                      @RequestParam(defaultValue = PNG) String format,
+                                                      ServerWebExchange exchange) {
+
+        String imageFormat = checkFormat(format);
+        if (SVG.equals(imageFormat)) {
+            return writeSvg(inputString, width, height, exchange, null);
+        }
+        String eTag = qrCodeGenerateService.getQRCodeETag(inputString, width, height, imageFormat);
+        if (isNotModified(exchange, eTag)) {
+            return Mono.just(QRCodeConditionalGet.notModified(eTag).build());
+        }
+
+        QRCodeServerTiming timing = serverTiming(exchange);
+        return renderImage(inputString, width, height, imageFormat, timing)
+                .<ResponseEntity<?>>map(imageData -> {
+                    ResponseEntity.BodyBuilder response = QRCodeConditionalGet.ok(eTag);
+                    MediaType contentType = MODULE_MATRIX_FORMATS.get(imageFormat);
+                    if (contentType != null) {
+                        response.contentType(contentType);
+                    }
+                    if (timing != null) {
+                        response.header(SERVER_TIMING, timing.toHeaderValue());
+                    }
+                    return response.body(imageData);
+                });
+    }
+
+    /**
+     * Encodes on the encoding pool and writes the SVG document straight into a response buffer,
+     * gzip-compressed when the client accepts it. Its size depends only on the symbol, so large pixel
+     * dimensions cost nothing extra.
+     */
+    private Mono<ResponseEntity<?>> writeSvg(String inputString, int width, int height,
+                                             ServerWebExchange exchange, String contentDisposition) {
+        boolean gzip = acceptsGzip(exchange);
+        // Each encoding of the document is a different representation with its own entity tag.
+        String eTag = qrCodeGenerateService.getQRCodeETag(inputString, width, height, SVG) + (gzip ? "-gzip" : "");
+        if (isNotModified(exchange, eTag)) {
+            // Caches must know the 304 stands for the representation chosen by Accept-Encoding.
+            return Mono.just(QRCodeConditionalGet.notModified(eTag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build());
+        }
+
+        QRCodeServerTiming timing = serverTiming(exchange);
+        DataBufferFactory bufferFactory = exchange.getResponse().bufferFactory();
+        return Mono.fromCallable(() -> writeImage(
+                        qrCodeGenerateService.encodeQRCode(inputString, width, height, SVG, timing), bufferFactory, gzip))
+                .subscribeOn(qrEncodingScheduler)
+                // A buffer written after the client went away is never sent.
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .<ResponseEntity<?>>map(body -> {
+                    ResponseEntity.BodyBuilder response = QRCodeConditionalGet.ok(eTag)
+                            .contentType(IMAGE_SVG)
+                            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                    if (contentDisposition != null) {
+                        response.header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+                    }
+                    if (gzip) {
+                        response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+                    }
+                    if (timing != null) {
+                        response.header(SERVER_TIMING, timing.toHeaderValue());
+                    }
+                    return response.body(body);
+                });
+    }
+
+    private static DataBuffer writeImage(QRCodeStreamedImage image, DataBufferFactory bufferFactory, boolean gzip)
+            throws IOException {
+        DataBuffer buffer = bufferFactory.allocateBuffer();
+        try {
+            OutputStream outputStream = buffer.asOutputStream();
+            if (!gzip) {
+                image.writeTo(outputStream);
+                return buffer;
+            }
+            GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream);
+            image.writeTo(gzipStream);
+            // Writes the trailer; the buffer's stream holds no resources to close.
+            gzipStream.finish();
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw e;
+        }
+    }
+
+    private static boolean acceptsGzip(ServerWebExchange exchange) {
+        String acceptEncoding = exchange.getRequest().getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                // "gzip;q=0" explicitly refuses it.
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    // Renders on the encoding pool; cancelling the subscription interrupts only this request's wait.
+    private Mono<byte[]> renderImage(String inputString, int width, int height, String imageFormat,
+                                     QRCodeServerTiming timing) {
+        return Mono.fromCallable(() -> qrCodeGenerateService.getQRCodeImage(inputString, width, height,
+                        imageFormat, timing))
+                .subscribeOn(qrEncodingScheduler);
+    }
+
+    @PostMapping(value = "/downloadQRCodeBatch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Flux<byte[]>> downloadQRCodeBatch(@RequestBody Flux<JsonNode> items) {
+        // Bound one element at a time, so an item with wrong field types fails alone.
+        return zipResponse(qrCodeBatchService.parseJson(items));
+    }
+
+    @PostMapping(value = "/downloadQRCodeBatch", consumes = TEXT_CSV_VALUE)
+    public ResponseEntity<Flux<byte[]>> downloadQRCodeBatchCsv(@RequestBody Flux<String> lines) {
+        return zipResponse(qrCodeBatchService.parseCsv(lines));
+    }
+
+    @GetMapping("/qrCodeCacheStats")
+    public Map<String, Object> qrCodeCacheStats() {
+        return qrCodeGenerateService.getCacheStatistics();
+    }
+
+    private ResponseEntity<Flux<byte[]>> zipResponse(Flux<QRCodeBatchItem> items) {
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_ZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=QR_Codes.zip")
+                .body(qrCodeBatchService.zip(items, qrEncodingScheduler));
+    }
+
+    // Lower-cased PNG, SVG or module matrix format; anything else is answered with 400 Bad Request.
+    private static String checkFormat(String format) {
+        String imageFormat = format.toLowerCase(Locale.ROOT);
+        if (!PNG.equals(imageFormat) && !SVG.equals(imageFormat) && !MODULE_MATRIX_FORMATS.containsKey(imageFormat)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported format " + format
+                    + ", expected one of " + PNG + ", " + SVG + ", " + String.join(", ", MODULE_MATRIX_FORMATS.keySet()));
+        }
+        return imageFormat;
+    }
+
+    /**
+     * A collector for the Server-Timing header when the client sent "X-Server-Timing: true" or the
+     * request was sampled (qr.server-timing.sample-rate), otherwise null.
+     */
+    private QRCodeServerTiming serverTiming(ServerWebExchange exchange) {
+        if (Boolean.parseBoolean(exchange.getRequest().getHeaders().getFirst(SERVER_TIMING_REQUEST_HEADER))
+                || (serverTimingSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < serverTimingSampleRate)) {
+            return new QRCodeServerTiming();
+        }
+        return null;
+    }
+
+    // True when the client already has this image; answered from the request parameters alone.
+    private static boolean isNotModified(ServerWebExchange exchange, String eTag) {
+        return QRCodeConditionalGet.isNotModified(
+                exchange.getRequest().getHeaders().getOrEmpty(HttpHeaders.IF_NONE_MATCH), eTag);
+    }
+}
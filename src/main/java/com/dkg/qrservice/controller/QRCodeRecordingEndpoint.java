@@ -0,0 +1,52 @@
+package com.dkg.qrservice.controller;
+
+import com.dkg.qrservice.service.QRCodeFlightRecorder;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * On-demand Flight Recorder recordings, at /actuator/jfr:
+ * POST /actuator/jfr/start (optional durationSeconds, maxSizeMegabytes) starts a bounded recording,
+ * POST /actuator/jfr/stop stops it and returns the .jfr file, GET /actuator/jfr reports its state.
+ * Not exposed over HTTP by default since it is unauthenticated; add jfr to
+ * management.endpoints.web.exposure.include only where the management port is private.
+ */
+@Component
+@Endpoint(id = "jfr")
+public class QRCodeRecordingEndpoint {
+
+    private final QRCodeFlightRecorder flightRecorder;
+
+    public QRCodeRecordingEndpoint(QRCodeFlightRecorder flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+
+    @ReadOperation
+    public Object status() {
+        return flightRecorder.status();
+    }
+
+    @WriteOperation
+    public Object control(@Selector String action, @Nullable Integer durationSeconds,
+                          @Nullable Integer maxSizeMegabytes) throws IOException, ParseException {
+        switch (action) {
+            case "start":
+                return flightRecorder.start(durationSeconds, maxSizeMegabytes);
+            case "stop":
+                Path recording = flightRecorder.stop();
+                return recording == null ? null : new FileSystemResource(recording);
+            default:
+                throw new IllegalArgumentException("Unknown action " + action + ", expected start or stop");
+        }
+    }
+}
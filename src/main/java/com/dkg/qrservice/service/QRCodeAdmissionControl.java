@@ -0,0 +1,118 @@
+package com.dkg.qrservice.service;
+
+import com.dkg.qrservice.util.DKG_ErrorCorrectionLevel;
+import com.dkg.qrservice.util.DKG_Version;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admits renders against a budget of estimated work in flight. Each render is charged a cost
+ * estimated up front from the payload length, EC level and output pixel count. Requests that would
+ * exceed the budget are shed instead of queued. Shedding starts an overload that lasts until the
+ * work in flight has dropped to half the budget; {@link QRCodeAdmissionHealthIndicator} reports it
+ * to the readiness group.
+ */
+@Component
+public class QRCodeAdmissionControl {
+
+    // Cost units are roughly nanoseconds of CPU: about 150 per module (mask selection, RS, placement)
+    // plus 1 per output pixel (scanlines and deflate). Measured costs range from ~0.2ms for a version
+    // 1 code at 300px to ~19ms for a version 40 code at 4000px.
+    private static final int COST_PER_MODULE = 150;
+    private static final int QUIET_ZONE_MODULES = 8;
+    // About 20ms of encoding in flight per core.
+    private static final long DEFAULT_BUDGET_PER_CORE = 20_000_000L;
+
+    private final long budget;
+    private final long retryAfterSeconds;
+    private final AtomicLong inFlightCost = new AtomicLong();
+    private final AtomicBoolean overloaded = new AtomicBoolean();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    public QRCodeAdmissionControl(@Value("${qr.admission.budget:0}") long budget,
+                                  @Value("${qr.admission.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.budget = budget > 0 ? budget : DEFAULT_BUDGET_PER_CORE * Runtime.getRuntime().availableProcessors();
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Estimated work to encode and render a code, without encoding it. Assumes byte mode and one byte
+     * per character to pick the smallest version that fits.
+     */
+    public long estimateCost(String content, int width, int height, DKG_ErrorCorrectionLevel errorCorrectionLevel) {
+        int dimension = estimateVersion(content.length(), errorCorrectionLevel).getDimensionForVersion();
+        long outputWidth = Math.max(width, dimension + QUIET_ZONE_MODULES);
+        long outputHeight = Math.max(height, dimension + QUIET_ZONE_MODULES);
+        return (long) COST_PER_MODULE * dimension * dimension + outputWidth * outputHeight;
+    }
+
+    /**
+     * Charges "cost" against the budget. When "shed" is false the cost is always charged, for work
+     * that is bounded elsewhere but should still count towards the load. A single request larger
+     * than the whole budget is admitted when nothing else is in flight, so it can still run.
+     */
+    public void acquire(long cost, boolean shed) {
+        while (true) {
+            long current = inFlightCost.get();
+            long next = current + cost;
+            if (shed && current > 0 && next > budget) {
+                this.shed.increment();
+                overloaded.set(true);
+                throw new QRCodeOverloadedException("Encoding capacity exhausted", retryAfterSeconds);
+            }
+            if (inFlightCost.compareAndSet(current, next)) {
+                admitted.increment();
+                return;
+            }
+        }
+    }
+
+    public void release(long cost) {
+        long remaining = inFlightCost.addAndGet(-cost);
+        if (remaining <= budget / 2) {
+            overloaded.set(false);
+        }
+    }
+
+    /**
+     * True from the first shed request until the work in flight has dropped to half the budget.
+     */
+    public boolean isOverloaded() {
+        return overloaded.get();
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public long getInFlightCost() {
+        return inFlightCost.get();
+    }
+
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    private static DKG_Version estimateVersion(int numBytes, DKG_ErrorCorrectionLevel errorCorrectionLevel) {
+        for (int versionNumber = 1; versionNumber <= 40; versionNumber++) {
+            DKG_Version version = DKG_Version.getVersionForNumber(versionNumber);
+            int numDataBytes = version.getTotalCodewords()
+                    - version.getECBlocksForLevel(errorCorrectionLevel).getTotalECCodewords();
+            // Mode indicator, character count and the data itself.
+            int numBits = 4 + (versionNumber < 10 ? 8 : 16) + 8 * numBytes;
+            if (numBits <= 8 * numDataBytes) {
+                return version;
+            }
+        }
+        return DKG_Version.getVersionForNumber(40);
+    }
+}
@@ -0,0 +1,29 @@
+package com.dkg.qrservice.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports OUT_OF_SERVICE while admission control is shedding, as the "qrAdmission" health
+ * contributor. It is included in the readiness group next to Boot's own readiness state, which stays
+ * with Boot, so an overload never marks an instance ready that is still warming up or shutting down.
+ */
+@Component("qrAdmissionHealthIndicator")
+public class QRCodeAdmissionHealthIndicator implements HealthIndicator {
+
+    private final QRCodeAdmissionControl admissionControl;
+
+    public QRCodeAdmissionHealthIndicator(QRCodeAdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = admissionControl.isOverloaded() ? Health.outOfService() : Health.up();
+        return health.withDetail("budget", admissionControl.getBudget())
+                .withDetail("inFlightCost", admissionControl.getInFlightCost())
+                .withDetail("shedCount", admissionControl.getShedCount())
+                .build();
+    }
+}
@@ -0,0 +1,68 @@
+package com.dkg.qrservice.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * One code in a batch request: the content, the image size and optional options.
+ */
+public class QRCodeBatchItem {
+
+    private String content;
+    private int width;
+    private int height;
+    private String errorCorrection;
+    private String fileName;
+    // Set when the item could not be read from the request, e.g. a malformed CSV line.
+    private String parseError;
+
+    public static QRCodeBatchItem invalid(String parseError) {
+        QRCodeBatchItem item = new QRCodeBatchItem();
+        item.parseError = parseError;
+        return item;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public String getErrorCorrection() {
+        return errorCorrection;
+    }
+
+    public void setErrorCorrection(String errorCorrection) {
+        this.errorCorrection = errorCorrection;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    @JsonIgnore
+    public String getParseError() {
+        return parseError;
+    }
+}
@@ -0,0 +1,22 @@
+package com.dkg.qrservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Iterator;
+
+public interface QRCodeBatchService {
+    Iterator<QRCodeBatchItem> readCsv(Reader reader);
+    Iterator<QRCodeBatchItem> readJson(InputStream body) throws IOException;
+    void writeZip(Iterator<QRCodeBatchItem> items, OutputStream outputStream) throws IOException;
+
+    // Non-blocking variants for the reactive stack.
+    Flux<QRCodeBatchItem> parseCsv(Flux<String> lines);
+    Flux<QRCodeBatchItem> parseJson(Flux<JsonNode> nodes);
+    Flux<byte[]> zip(Flux<QRCodeBatchItem> items, Scheduler scheduler);
+}
@@ -0,0 +1,96 @@
+package com.dkg.qrservice.service;
+
+import com.dkg.qrservice.util.DKG_EncodeStage;
+import com.dkg.qrservice.util.DKG_EncodeTimer;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one QR code render, from encoding to the finished image. Carries the
+ * symbol shape and the stage durations from {@link com.dkg.qrservice.util.DKG_EncodeTimer}.
+ */
+@Name("com.dkg.qrservice.QRCodeEncode")
+@Label("QR Code Encode")
+@Category({"QR Service", "Encoding"})
+@Description("Encoding and rendering of one QR code image")
+@StackTrace(false)
+public class QRCodeEncodeEvent extends Event {
+
+    @Label("Content Length")
+    int contentLength;
+
+    @Label("Version")
+    int version;
+
+    @Label("Mode")
+    String mode;
+
+    @Label("EC Level")
+    String ecLevel;
+
+    @Label("Mask Pattern")
+    int maskPattern;
+
+    @Label("Modules")
+    @Description("Modules per side of the symbol")
+    int modules;
+
+    @Label("Output Pixels")
+    long outputPixels;
+
+    @Label("Image Size")
+    @DataAmount
+    long imageBytes;
+
+    @Label("Data Encoding")
+    @Timespan
+    long dataEncoding;
+
+    @Label("Version Selection")
+    @Timespan
+    long versionSelection;
+
+    @Label("Error Correction")
+    @Timespan
+    long errorCorrection;
+
+    @Label("Matrix Build")
+    @Timespan
+    long matrixBuild;
+
+    @Label("Mask Selection")
+    @Timespan
+    long maskSelection;
+
+    @Label("Render")
+    @Timespan
+    long render;
+
+    @Label("Image Write")
+    @Timespan
+    long imageWrite;
+
+    public void populate(int contentLength, DKG_EncodeTimer timer) {
+        this.contentLength = contentLength;
+        version = timer.getVersion();
+        mode = String.valueOf(timer.getMode());
+        ecLevel = String.valueOf(timer.getECLevel());
+        maskPattern = timer.getMaskPattern();
+        modules = timer.getDimension();
+        outputPixels = (long) timer.getOutputWidth() * timer.getOutputHeight();
+        imageBytes = timer.getImageBytes();
+        dataEncoding = timer.getStageNanos(DKG_EncodeStage.MODE_SELECTION) + timer.getStageNanos(DKG_EncodeStage.DATA_ENCODING);
+        versionSelection = timer.getStageNanos(DKG_EncodeStage.VERSION_SELECTION);
+        errorCorrection = timer.getStageNanos(DKG_EncodeStage.ERROR_CORRECTION);
+        matrixBuild = timer.getStageNanos(DKG_EncodeStage.MATRIX_BUILD);
+        maskSelection = timer.getStageNanos(DKG_EncodeStage.MASK_SELECTION);
+        render = timer.getStageNanos(DKG_EncodeStage.RENDER);
+        imageWrite = timer.getStageNanos(DKG_EncodeStage.IMAGE_WRITE);
+    }
+}
@@ -0,0 +1,125 @@
+package com.dkg.qrservice.service;
+
+import com.dkg.qrservice.util.DKG_EncodeStage;
+import com.dkg.qrservice.util.DKG_EncodeTimer;
+import com.dkg.qrservice.util.DKG_ErrorCorrectionLevel;
+import com.dkg.qrservice.util.DKG_PruningMaskSelector;
+import com.dkg.qrservice.util.DKG_QR_Mode;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Publishes the stage timings collected by {@link DKG_EncodeTimer} as the "qr.encode.stage" latency
+ * histogram, tagged by stage, version bucket, mode and EC level, and exposed under
+ * /actuator/metrics. With qr.metrics.stage-timing.enabled=false no timer is created and the encoder
+ * skips all timing. The work skipped by branch-and-bound mask selection is published as the
+ * "qr.mask.pruning.candidates" and "qr.mask.pruning.bands" counters, tagged by outcome.
+ */
+@Component
+public class QRCodeEncodeMetrics {
+
+    private static final String STAGE_TIMER = "qr.encode.stage";
+    private static final String PRUNING_CANDIDATES = "qr.mask.pruning.candidates";
+    private static final String PRUNING_BANDS = "qr.mask.pruning.bands";
+    private static final DKG_EncodeStage[] STAGES = DKG_EncodeStage.values();
+    private static final DKG_QR_Mode[] MODES = DKG_QR_Mode.values();
+    private static final DKG_ErrorCorrectionLevel[] EC_LEVELS = DKG_ErrorCorrectionLevel.values();
+    // Versions 1-9, 10-26 and 27-40 use different character count lengths, and cost grows with size.
+    private static final String[] VERSION_BUCKETS = {"1-9", "10-26", "27-40"};
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    // Timers by (stage, version bucket, mode, EC level), so recording does not allocate tags.
+    private final AtomicReferenceArray<Timer> timers =
+            new AtomicReferenceArray<>(STAGES.length * VERSION_BUCKETS.length * MODES.length * EC_LEVELS.length);
+
+    public QRCodeEncodeMetrics(MeterRegistry meterRegistry,
+                               @Value("${qr.metrics.stage-timing.enabled:true}") boolean enabled) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        registerPruningCounters();
+    }
+
+    /**
+     * A timer to pass as the QR_ENCODE_TIMER hint, or null when stage timing is disabled.
+     */
+    public DKG_EncodeTimer newTimer() {
+        return enabled ? new DKG_EncodeTimer() : null;
+    }
+
+    /**
+     * Records a completed encode. Does nothing for a null timer or one whose encode did not finish.
+     */
+    public void record(DKG_EncodeTimer timer) {
+        if (timer == null || timer.getMode() == null) {
+            return;
+        }
+        int bucket = versionBucket(timer.getVersion());
+        for (DKG_EncodeStage stage : STAGES) {
+            long nanos = timer.getStageNanos(stage);
+            if (nanos > 0) {
+                stageTimer(stage, bucket, timer.getMode(), timer.getECLevel()).record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private Timer stageTimer(DKG_EncodeStage stage, int bucket, DKG_QR_Mode mode, DKG_ErrorCorrectionLevel ecLevel) {
+        int index = ((stage.ordinal() * VERSION_BUCKETS.length + bucket) * MODES.length + mode.ordinal())
+                * EC_LEVELS.length + ecLevel.ordinal();
+        Timer timer = timers.get(index);
+        if (timer == null) {
+            // Registering is idempotent, so a race only repeats the lookup.
+            timer = Timer.builder(STAGE_TIMER)
+                    .description("Time spent in each stage of QR code encoding and rendering")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .tag("version", VERSION_BUCKETS[bucket])
+                    .tag("mode", mode.name().toLowerCase(Locale.ROOT))
+                    .tag("ec", ecLevel.name())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(1_000))
+                    .maximumExpectedValue(Duration.ofSeconds(1))
+                    .register(meterRegistry);
+            timers.set(index, timer);
+        }
+        return timer;
+    }
+
+    private void registerPruningCounters() {
+        FunctionCounter.builder(PRUNING_CANDIDATES, DKG_PruningMaskSelector.class,
+                        selector -> DKG_PruningMaskSelector.getCandidatesScored()
+                                - DKG_PruningMaskSelector.getCandidatesPruned())
+                .description("Mask candidates scored in full by branch-and-bound mask selection")
+                .tag("outcome", "scored")
+                .register(meterRegistry);
+        FunctionCounter.builder(PRUNING_CANDIDATES, DKG_PruningMaskSelector.class,
+                        selector -> DKG_PruningMaskSelector.getCandidatesPruned())
+                .description("Mask candidates abandoned before their last band by branch-and-bound mask selection")
+                .tag("outcome", "pruned")
+                .register(meterRegistry);
+        FunctionCounter.builder(PRUNING_BANDS, DKG_PruningMaskSelector.class,
+                        selector -> DKG_PruningMaskSelector.getBandsScored())
+                .description("Row and column bands scored by branch-and-bound mask selection")
+                .tag("outcome", "scored")
+                .register(meterRegistry);
+        FunctionCounter.builder(PRUNING_BANDS, DKG_PruningMaskSelector.class,
+                        selector -> DKG_PruningMaskSelector.getBandsSkipped())
+                .description("Row and column bands that exhaustive scoring would have evaluated but pruning skipped")
+                .tag("outcome", "skipped")
+                .register(meterRegistry);
+    }
+
+    private static int versionBucket(int version) {
+        if (version <= 9) {
+            return 0;
+        }
+        return version <= 26 ? 1 : 2;
+    }
+}
@@ -0,0 +1,101 @@
+package com.dkg.qrservice.service;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs at most one bounded Flight Recorder recording at a time, with the JDK "profile" settings plus
+ * the QR encode events. The recording stops by itself after its duration and is written to a
+ * temporary file.
+ */
+@Component
+public class QRCodeFlightRecorder {
+
+    private static final Duration DEFAULT_DURATION = Duration.ofSeconds(60);
+    private static final Duration MAX_DURATION = Duration.ofMinutes(10);
+    private static final long DEFAULT_MAX_SIZE_BYTES = 64L * 1024 * 1024;
+    private static final long MAX_SIZE_BYTES = 512L * 1024 * 1024;
+
+    private Recording recording;
+    private Path destination;
+
+    public synchronized Map<String, Object> start(Integer durationSeconds, Integer maxSizeMegabytes)
+            throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        close();
+
+        Duration duration = durationSeconds == null ? DEFAULT_DURATION : Duration.ofSeconds(durationSeconds);
+        if (duration.isNegative() || duration.isZero() || duration.compareTo(MAX_DURATION) > 0) {
+            duration = MAX_DURATION;
+        }
+        long maxSize = maxSizeMegabytes == null ? DEFAULT_MAX_SIZE_BYTES : maxSizeMegabytes * 1024L * 1024L;
+        if (maxSize <= 0 || maxSize > MAX_SIZE_BYTES) {
+            maxSize = MAX_SIZE_BYTES;
+        }
+
+        destination = Files.createTempFile("qr-service-", ".jfr");
+        recording = new Recording(Configuration.getConfiguration("profile"));
+        recording.setName("qr-service");
+        recording.enable(QRCodeEncodeEvent.class);
+        recording.setDuration(duration);
+        recording.setMaxSize(maxSize);
+        recording.setToDisk(true);
+        recording.setDestination(destination);
+        recording.start();
+        return status();
+    }
+
+    /**
+     * Stops the recording if it is still running and returns the file it was written to, or null if
+     * there is no recording.
+     */
+    public synchronized Path stop() {
+        if (recording == null) {
+            return null;
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        return destination;
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("state", recording.getState().name());
+        status.put("startTime", recording.getStartTime());
+        status.put("duration", recording.getDuration());
+        status.put("maxSizeBytes", recording.getMaxSize());
+        status.put("sizeBytes", recording.getSize());
+        status.put("destination", destination.toString());
+        return status;
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+        if (destination != null) {
+            Files.deleteIfExists(destination);
+            destination = null;
+        }
+    }
+}
@@ -1,11 +1,60 @@
 package com.dkg.qrservice.service;
 
+import com.dkg.qrservice.util.DKG_ErrorCorrectionLevel;
 import com.dkg.qrservice.util.DKG_WriterException;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public interface QRCodeGenerateService {
     Map<String, Object> downloadQRCode(String inputString, int width, int height) throws IOException, DKG_WriterException;
     byte[] getQRCodeImage(String text, int width, int height) throws DKG_WriterException, IOException ;
+
+    /**
+     * Renders a PNG on the calling thread without the response cache, for one-off images such as
+     * batch items. Charged to admission control but never shed.
+     */
+    byte[] getQRCodeImage(String text, int width, int height, DKG_ErrorCorrectionLevel errorCorrectionLevel) throws DKG_WriterException, IOException;
+
+    /**
+     * Like {@link #getQRCodeImageAsync(String, int, int, String, QRCodeServerTiming)}, but renders on
+     * the calling thread, for callers that schedule the work themselves. Interrupting that thread
+     * abandons this request without failing identical requests that share its render.
+     */
+    byte[] getQRCodeImage(String text, int width, int height, String format, QRCodeServerTiming timing)
+            throws DKG_WriterException, IOException;
+
+    /**
+     * Like {@link #getQRCodeImage(String, int, int)}, but encoding runs on the bounded encoding pool.
+     * Throws RejectedExecutionException when that pool is saturated. The returned array may be the
+     * cached image itself, shared with other requests: write it out as is and never modify it.
+     */
+    CompletableFuture<byte[]> getQRCodeImageAsync(String text, int width, int height);
+
+    /**
+     * Like the method above, in the given format: PNG, or the bare module matrix as BIN, JSON or PBM,
+     * which ignore width and height. Fills in "timing", if given, with the cache lookup and render
+     * stages of the request.
+     */
+    CompletableFuture<byte[]> getQRCodeImageAsync(String text, int width, int height, String format,
+                                                  QRCodeServerTiming timing);
+
+    /**
+     * Encodes on the encoding pool, subject to admission control like the methods above, and returns
+     * an image to stream in the given format. Nothing is cached.
+     */
+    CompletableFuture<QRCodeStreamedImage> encodeQRCodeAsync(String text, int width, int height, String format,
+                                                             QRCodeServerTiming timing);
+
+    /**
+     * Like {@link #encodeQRCodeAsync}, but encodes on the calling thread, for callers that schedule
+     * the work themselves.
+     */
+    QRCodeStreamedImage encodeQRCode(String text, int width, int height, String format, QRCodeServerTiming timing)
+            throws DKG_WriterException;
+
+    String getQRCodeETag(String text, int width, int height);
+    String getQRCodeETag(String text, int width, int height, String format);
+    Map<String, Object> getCacheStatistics();
 }
@@ -0,0 +1,12 @@
+package com.dkg.qrservice.service;
+
+/**
+ * Thrown when request parameters are outside the limits the service renders, e.g. an output size
+ * above qr.image.max-dimension.
+ */
+public class QRCodeInvalidRequestException extends IllegalArgumentException {
+
+    public QRCodeInvalidRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package com.dkg.qrservice.service;
+
+/**
+ * Thrown when a request is shed because the encoding work budget is exhausted.
+ */
+public class QRCodeOverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public QRCodeOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,118 @@
+package com.dkg.qrservice.service;
+
+import com.dkg.qrservice.util.DKG_ErrorCorrectionLevel;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Canonical description of a rendered QR code. Two requests with equal keys produce identical bytes,
+ * so the key is used to cache responses.
+ */
+public final class QRCodeRequestKey {
+
+    // Bump whenever a change to the encoder or the image writers alters the output for the same key,
+    // so that clients and CDNs holding an old ETag fetch the new bytes.
+    private static final String RENDERER_VERSION = "1";
+
+    private final String content;
+    private final int width;
+    private final int height;
+    private final DKG_ErrorCorrectionLevel errorCorrectionLevel;
+    private final int onColor;
+    private final int offColor;
+    private final String format;
+
+    public QRCodeRequestKey(String content, int width, int height, DKG_ErrorCorrectionLevel errorCorrectionLevel,
+                            int onColor, int offColor, String format) {
+        this.content = Objects.requireNonNull(content, "content");
+        this.width = width;
+        this.height = height;
+        this.errorCorrectionLevel = Objects.requireNonNull(errorCorrectionLevel, "errorCorrectionLevel");
+        this.onColor = onColor;
+        this.offColor = offColor;
+        this.format = format.toUpperCase(Locale.ROOT);
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public DKG_ErrorCorrectionLevel getErrorCorrectionLevel() {
+        return errorCorrectionLevel;
+    }
+
+    public int getOnColor() {
+        return onColor;
+    }
+
+    public int getOffColor() {
+        return offColor;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * Strong entity tag for the image this key renders to, derived from the key alone so it can be
+     * checked before any encoding work. Returned unquoted.
+     */
+    public String toETag() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        // Every field is terminated, so distinct keys never produce the same digest input.
+        String fields = RENDERER_VERSION + '\n' + format + '\n' + width + '\n' + height + '\n'
+                + errorCorrectionLevel + '\n' + Integer.toHexString(onColor) + '\n'
+                + Integer.toHexString(offColor) + '\n';
+        digest.update(fields.getBytes(StandardCharsets.UTF_8));
+        digest.update(content.getBytes(StandardCharsets.UTF_8));
+        return "qr-" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QRCodeRequestKey)) {
+            return false;
+        }
+        QRCodeRequestKey other = (QRCodeRequestKey) o;
+        return width == other.width
+                && height == other.height
+                && onColor == other.onColor
+                && offColor == other.offColor
+                && errorCorrectionLevel == other.errorCorrectionLevel
+                && format.equals(other.format)
+                && content.equals(other.content);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(content, width, height, errorCorrectionLevel, onColor, offColor, format);
+    }
+
+    @Override
+    public String toString() {
+        return "QRCodeRequestKey{" + format + ' ' + width + 'x' + height + ' ' + errorCorrectionLevel
+                + " on=" + Integer.toHexString(onColor) + " off=" + Integer.toHexString(offColor)
+                + " content=" + content.length() + " chars}";
+    }
+}
@@ -0,0 +1,80 @@
+package com.dkg.qrservice.service;
+
+import com.dkg.qrservice.util.DKG_EncodeStage;
+import com.dkg.qrservice.util.DKG_EncodeTimer;
+
+import java.util.Locale;
+
+/**
+ * Collects the stage breakdown of one request for its Server-Timing response header: cache lookup,
+ * the encoder stages of the render that produced the image and the total. It is created by the
+ * controller and handed to the service, which fills it in. A request that joined another request's
+ * render reports that render's stages.
+ */
+public class QRCodeServerTiming {
+
+    private final long startNanos = System.nanoTime();
+    private boolean cacheLookedUp;
+    private long cacheLookupNanos;
+    private boolean cacheHit;
+    private boolean coalesced;
+    private String format;
+    private DKG_EncodeTimer encodeTimer;
+
+    public void cacheLookup(long nanos, boolean hit) {
+        cacheLookedUp = true;
+        cacheLookupNanos = nanos;
+        cacheHit = hit;
+    }
+
+    public void coalesced() {
+        coalesced = true;
+    }
+
+    /**
+     * The timer of the render that produced the image for the given output format. Null if that
+     * render was not timed. Images streamed to the response are reported before they are written,
+     * so their serialization is not included.
+     */
+    public void render(String format, DKG_EncodeTimer encodeTimer) {
+        this.format = format;
+        this.encodeTimer = encodeTimer;
+    }
+
+    /**
+     * The Server-Timing header value, with durations in milliseconds and the total measured up to now.
+     */
+    public String toHeaderValue() {
+        StringBuilder header = new StringBuilder(256);
+        if (cacheLookedUp) {
+            header.append("cache;desc=\"").append(cacheHit ? "hit" : coalesced ? "coalesced" : "miss").append('"');
+            appendDuration(header, cacheLookupNanos);
+        }
+        if (encodeTimer != null) {
+            appendMetric(header, "encode-data", encodeTimer.getStageNanos(DKG_EncodeStage.MODE_SELECTION)
+                    + encodeTimer.getStageNanos(DKG_EncodeStage.DATA_ENCODING)
+                    + encodeTimer.getStageNanos(DKG_EncodeStage.VERSION_SELECTION));
+            appendMetric(header, "encode-rs", encodeTimer.getStageNanos(DKG_EncodeStage.ERROR_CORRECTION));
+            appendMetric(header, "encode-matrix", encodeTimer.getStageNanos(DKG_EncodeStage.MATRIX_BUILD));
+            appendMetric(header, "encode-mask", encodeTimer.getStageNanos(DKG_EncodeStage.MASK_SELECTION));
+            appendMetric(header, "render", encodeTimer.getStageNanos(DKG_EncodeStage.RENDER));
+            long serializeNanos = encodeTimer.getStageNanos(DKG_EncodeStage.IMAGE_WRITE);
+            if (serializeNanos > 0) {
+                header.append(", serialize;desc=\"").append(format).append('"');
+                appendDuration(header, serializeNanos);
+            }
+        }
+        appendMetric(header, "total", System.nanoTime() - startNanos);
+        // Drop the separator in front of the first metric.
+        return header.charAt(0) == ',' ? header.substring(2) : header.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, long nanos) {
+        header.append(", ").append(name);
+        appendDuration(header, nanos);
+    }
+
+    private static void appendDuration(StringBuilder header, long nanos) {
+        header.append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+    }
+}
@@ -0,0 +1,16 @@
+package com.dkg.qrservice.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An encoded QR code whose image is written straight to an output stream instead of being rendered
+ * to bytes first. Used for vector formats, whose output is small and independent of the requested
+ * pixel size. {@link #writeTo} may be called once.
+ */
+public interface QRCodeStreamedImage {
+
+    String getFormat();
+
+    void writeTo(OutputStream stream) throws IOException;
+}
@@ -0,0 +1,174 @@
+package com.dkg.qrservice.service;
+
+import com.dkg.qrservice.util.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders a representative workload on the encoding pool at startup, so the encoder, the configured
+ * mask selection and every image writer the endpoints serve (PNG, SVG and the bin, json and pbm
+ * module matrix formats) are JIT-compiled before the first real request. Boot only reports the instance ready
+ * (ACCEPTING_TRAFFIC) once all application runners have returned, so readiness waits for the warm-up.
+ * Passes repeat until the JIT compiler settles or qr.warmup.time-budget runs out.
+ */
+@Component
+public class QRCodeWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(QRCodeWarmup.class);
+
+    private static final int[] OUTPUT_SIZES = {200, 300, 500, 1000};
+    // Output formats in proportion to their expected traffic; PNG is the default.
+    private static final String[] FORMATS = {"png", "png", "svg", "png", "bin", "png", "json", "png", "pbm"};
+    private static final String ALPHANUMERIC = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+    private static final String URL_CHARACTERS = "abcdefghijklmnopqrstuvwxyz0123456789/?=&-_.";
+    private static final int MIN_PASSES = 2;
+    // A pass counts as settled when the JIT compiled for less than this share of the pass's wall time.
+    private static final double SETTLED_COMPILE_RATIO = 0.05;
+
+    private final Executor qrEncodingExecutor;
+    private final QRCodeEncodeMetrics encodeMetrics;
+    private final DKG_MaskSelection maskSelection;
+    private final boolean enabled;
+    private final Duration timeBudget;
+
+    public QRCodeWarmup(@Qualifier("qrEncodingExecutor") Executor qrEncodingExecutor,
+                        QRCodeEncodeMetrics encodeMetrics,
+                        @Value("${qr.encoding.mask-selection:PRUNING}") DKG_MaskSelection maskSelection,
+                        @Value("${qr.warmup.enabled:true}") boolean enabled,
+                        @Value("${qr.warmup.time-budget:PT30S}") Duration timeBudget) {
+        this.qrEncodingExecutor = qrEncodingExecutor;
+        this.encodeMetrics = encodeMetrics;
+        this.maskSelection = maskSelection;
+        this.enabled = enabled;
+        this.timeBudget = timeBudget;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        boolean compileTimeAvailable = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+        long compileStart = compileTimeAvailable ? compiler.getTotalCompilationTime() : 0;
+        long start = System.nanoTime();
+        long deadline = start + timeBudget.toNanos();
+        LongAdder renders = new LongAdder();
+        int passes = 0;
+        boolean settled = false;
+
+        while (!settled && System.nanoTime() < deadline) {
+            long passStart = System.nanoTime();
+            long passCompileStart = compileTimeAvailable ? compiler.getTotalCompilationTime() : 0;
+            runPass(passes, deadline, renders);
+            passes++;
+            long passMillis = (System.nanoTime() - passStart) / 1_000_000;
+            if (compileTimeAvailable) {
+                long passCompileMillis = compiler.getTotalCompilationTime() - passCompileStart;
+                log.debug("QR warm-up pass {}: {} ms, {} ms compiling", passes, passMillis, passCompileMillis);
+                settled = passes >= MIN_PASSES && passCompileMillis <= passMillis * SETTLED_COMPILE_RATIO;
+            } else {
+                // Without compile time monitoring, stop after the minimum number of passes.
+                settled = passes >= MIN_PASSES;
+            }
+        }
+
+        log.info("QR warm-up {} after {} passes, {} renders in {} ms, {} ms JIT compilation",
+                settled ? "settled" : "stopped at its time budget", passes, renders.sum(),
+                (System.nanoTime() - start) / 1_000_000,
+                compileTimeAvailable ? compiler.getTotalCompilationTime() - compileStart : "unknown");
+    }
+
+    // One render per version, EC level and mode, spread over the encoding pool.
+    private void runPass(int pass, long deadline, LongAdder renders) {
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int versionNumber = 1; versionNumber <= 40; versionNumber++) {
+            int version = versionNumber;
+            tasks.add(CompletableFuture.runAsync(() -> renderVersion(version, pass, deadline, renders),
+                    qrEncodingExecutor));
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+    }
+
+    private void renderVersion(int versionNumber, int pass, long deadline, LongAdder renders) {
+        DKG_Version version = DKG_Version.getVersionForNumber(versionNumber);
+        Random random = new Random(31L * versionNumber + pass);
+        DKG_QRCodeDKGWriter writer = new DKG_QRCodeDKGWriter();
+        DKG_MatrixToImageConfig config = new DKG_MatrixToImageConfig();
+        for (DKG_ErrorCorrectionLevel ecLevel : DKG_ErrorCorrectionLevel.values()) {
+            DKG_Version.ECBlocks ecBlocks = version.getECBlocksForLevel(ecLevel);
+            // Data bits left after the mode indicator and the longest character count field.
+            int dataBits = (version.getTotalCodewords() - ecBlocks.getTotalECCodewords()) * 8 - 20;
+            for (DKG_QR_Mode mode : new DKG_QR_Mode[]{DKG_QR_Mode.NUMERIC, DKG_QR_Mode.ALPHANUMERIC, DKG_QR_Mode.BYTE}) {
+                if (System.nanoTime() >= deadline) {
+                    return;
+                }
+                String content = content(mode, dataBits, random);
+                int variant = versionNumber + ecLevel.ordinal() + mode.ordinal() + pass;
+                String format = FORMATS[variant % FORMATS.length];
+                // Like the service, module matrix formats are encoded without an output size.
+                int size = DKG_MatrixToImageWriter.isModuleMatrixFormat(format) ? 0
+                        : OUTPUT_SIZES[variant % OUTPUT_SIZES.length];
+                Hashtable<DKG_EncodeHintType, Object> hintMap = new Hashtable<>();
+                hintMap.put(DKG_EncodeHintType.ERROR_CORRECTION, ecLevel);
+                hintMap.put(DKG_EncodeHintType.QR_MASK_SELECTION, maskSelection);
+                // Exercise the timed paths too, but never record these renders.
+                DKG_EncodeTimer timer = encodeMetrics.newTimer();
+                if (timer != null) {
+                    hintMap.put(DKG_EncodeHintType.QR_ENCODE_TIMER, timer);
+                }
+                try {
+                    DKG_QRCodeRaster raster = writer.encodeRaster(content, DKG_BarcodeFormat.QR_CODE, size, size, hintMap);
+                    DKG_MatrixToImageWriter.writeToStream(raster, format, OutputStream.nullOutputStream(), config);
+                    renders.increment();
+                } catch (DKG_WriterException | IOException e) {
+                    log.warn("QR warm-up render failed for version {} {} {} {}", versionNumber, ecLevel, mode, format, e);
+                }
+            }
+        }
+    }
+
+    // Random content filling most of the version's capacity in the given mode.
+    private static String content(DKG_QR_Mode mode, int dataBits, Random random) {
+        int length;
+        String alphabet;
+        switch (mode) {
+            case NUMERIC:
+                length = dataBits * 3 / 10;
+                alphabet = "0123456789";
+                break;
+            case ALPHANUMERIC:
+                length = dataBits * 2 / 11;
+                alphabet = ALPHANUMERIC;
+                break;
+            default:
+                length = dataBits / 8;
+                alphabet = URL_CHARACTERS;
+                break;
+        }
+        length = Math.max(1, length * 9 / 10);
+        StringBuilder content = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            content.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return content.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package com.dkg.qrservice.service.impl;
+
+import com.dkg.qrservice.service.QRCodeBatchItem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads batch items lazily from CSV lines of the form
+ * {@code content,width,height[,errorCorrection[,fileName]]}. Fields may be double quoted, with
+ * {@code ""} for a literal quote. Blank lines and a leading header line starting with "content"
+ * are skipped. A malformed line becomes an invalid item instead of failing the batch.
+ */
+class QRCodeBatchCsvReader implements Iterator<QRCodeBatchItem> {
+
+    private final BufferedReader reader;
+    private int lineNumber;
+    private String nextLine;
+
+    QRCodeBatchCsvReader(Reader reader) {
+        this.reader = new BufferedReader(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextLine == null) {
+            nextLine = readLine();
+        }
+        return nextLine != null;
+    }
+
+    @Override
+    public QRCodeBatchItem next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String line = nextLine;
+        nextLine = null;
+        return parse(line, lineNumber);
+    }
+
+    static boolean isSkipped(String line, long lineNumber) {
+        return line.trim().isEmpty()
+                || (lineNumber == 1 && line.regionMatches(true, 0, "content", 0, "content".length()));
+    }
+
+    private String readLine() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (!isSkipped(line, lineNumber)) {
+                    return line;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static QRCodeBatchItem parse(String line, long lineNumber) {
+        List<String> fields = splitFields(line);
+        if (fields == null) {
+            return QRCodeBatchItem.invalid("Line " + lineNumber + ": unterminated quoted field");
+        }
+        if (fields.size() < 3 || fields.size() > 5) {
+            return QRCodeBatchItem.invalid("Line " + lineNumber + ": expected 3 to 5 fields but got " + fields.size());
+        }
+        QRCodeBatchItem item = new QRCodeBatchItem();
+        item.setContent(fields.get(0));
+        try {
+            item.setWidth(Integer.parseInt(fields.get(1).trim()));
+            item.setHeight(Integer.parseInt(fields.get(2).trim()));
+        } catch (NumberFormatException e) {
+            return QRCodeBatchItem.invalid("Line " + lineNumber + ": width and height must be integers");
+        }
+        if (fields.size() > 3 && !fields.get(3).trim().isEmpty()) {
+            item.setErrorCorrection(fields.get(3).trim());
+        }
+        if (fields.size() > 4 && !fields.get(4).trim().isEmpty()) {
+            item.setFileName(fields.get(4).trim());
+        }
+        return item;
+    }
+
+    // Returns null if a quoted field is not closed on this line.
+    private static List<String> splitFields(String line) {
+        List<String> fields = new ArrayList<>(5);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,48 @@
+package com.dkg.qrservice.service.impl;
+
+import com.dkg.qrservice.service.QRCodeBatchItem;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Iterator;
+
+/**
+ * Reads batch items lazily from a JSON array of objects. Each element is read as a tree first and
+ * only then bound to {@link QRCodeBatchItem}, so an element with wrong or unknown fields becomes an
+ * invalid item instead of failing the batch, as a malformed CSV line does. Malformed JSON still ends
+ * the batch, since nothing after it can be read reliably.
+ */
+class QRCodeBatchJsonReader implements Iterator<QRCodeBatchItem> {
+
+    private final ObjectMapper objectMapper;
+    private final Iterator<JsonNode> nodes;
+    private long itemNumber;
+
+    QRCodeBatchJsonReader(ObjectMapper objectMapper, Iterator<JsonNode> nodes) {
+        this.objectMapper = objectMapper;
+        this.nodes = nodes;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nodes.hasNext();
+    }
+
+    @Override
+    public QRCodeBatchItem next() {
+        JsonNode node = nodes.next();
+        return parse(objectMapper, node, ++itemNumber);
+    }
+
+    static QRCodeBatchItem parse(ObjectMapper objectMapper, JsonNode node, long itemNumber) {
+        if (!node.isObject()) {
+            return QRCodeBatchItem.invalid("Item " + itemNumber + ": expected an object but got " + node.getNodeType());
+        }
+        try {
+            return objectMapper.treeToValue(node, QRCodeBatchItem.class);
+        } catch (JsonProcessingException e) {
+            return QRCodeBatchItem.invalid("Item " + itemNumber + ": " + e.getOriginalMessage());
+        }
+    }
+}
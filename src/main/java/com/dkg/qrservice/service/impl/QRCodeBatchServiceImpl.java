@@ -0,0 +1,267 @@
+package com.dkg.qrservice.service.impl;
+
+import com.dkg.qrservice.service.QRCodeBatchItem;
+import com.dkg.qrservice.service.QRCodeBatchService;
+import com.dkg.qrservice.service.QRCodeGenerateService;
+import com.dkg.qrservice.util.DKG_ErrorCorrectionLevel;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.concurrent.Queues;
+import reactor.util.retry.Retry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Encodes batch items on the shared encoding pool and streams them into a ZIP in input order. At most
+ * {@code window} items are in flight per batch, so memory does not grow with the batch size. Items
+ * that fail are written as {@code .error.txt} entries and the batch continues.
+ */
+@Service
+public class QRCodeBatchServiceImpl implements QRCodeBatchService {
+
+    private final QRCodeGenerateService qrCodeGenerateService;
+    private final ThreadPoolExecutor qrEncodingExecutor;
+    private final ObjectMapper objectMapper;
+    private final int window;
+
+    public QRCodeBatchServiceImpl(QRCodeGenerateService qrCodeGenerateService,
+                                  @Qualifier("qrEncodingExecutor") ThreadPoolExecutor qrEncodingExecutor,
+                                  ObjectMapper objectMapper,
+                                  @Value("${qr.batch.window:0}") int window) {
+        this.qrCodeGenerateService = qrCodeGenerateService;
+        this.qrEncodingExecutor = qrEncodingExecutor;
+        this.objectMapper = objectMapper;
+        this.window = window > 0 ? window : 2 * qrEncodingExecutor.getCorePoolSize();
+    }
+
+    @Override
+    public Iterator<QRCodeBatchItem> readCsv(Reader reader) {
+        return new QRCodeBatchCsvReader(reader);
+    }
+
+    @Override
+    public Iterator<QRCodeBatchItem> readJson(InputStream body) throws IOException {
+        return new QRCodeBatchJsonReader(objectMapper, objectMapper.readerFor(JsonNode.class).readValues(body));
+    }
+
+    @Override
+    public Flux<QRCodeBatchItem> parseCsv(Flux<String> lines) {
+        return lines.index()
+                .filter(line -> !QRCodeBatchCsvReader.isSkipped(line.getT2(), line.getT1() + 1))
+                .map(line -> QRCodeBatchCsvReader.parse(line.getT2(), line.getT1() + 1));
+    }
+
+    @Override
+    public Flux<QRCodeBatchItem> parseJson(Flux<JsonNode> nodes) {
+        return nodes.index()
+                .map(node -> QRCodeBatchJsonReader.parse(objectMapper, node.getT2(), node.getT1() + 1));
+    }
+
+    @Override
+    public Flux<byte[]> zip(Flux<QRCodeBatchItem> items, Scheduler scheduler) {
+        return Flux.defer(() -> {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            ZipOutputStream zip = new ZipOutputStream(buffer);
+            // Keeps at most "window" items rendering and emits them in input order; more items are
+            // only requested as the client consumes the ZIP. An unreadable request body still lets
+            // the items already read finish, as in writeZip.
+            return items.index()
+                    .flatMapSequentialDelayError(item -> renderOn(scheduler, (int) (item.getT1() + 1), item.getT2()),
+                            window, Queues.XS_BUFFER_SIZE)
+                    .onErrorResume(e -> Mono.just(
+                            BatchEntry.error("batch.error.txt", "Could not read batch items: " + e.getMessage())))
+                    .map(entry -> {
+                        try {
+                            writeEntry(zip, entry);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return drain(buffer);
+                    })
+                    .concatWith(Mono.fromCallable(() -> {
+                        zip.finish();
+                        return drain(buffer);
+                    }));
+        });
+    }
+
+    private Mono<BatchEntry> renderOn(Scheduler scheduler, int index, QRCodeBatchItem item) {
+        // Cancelling the subscription, e.g. when the client disconnects, interrupts the render.
+        return Mono.fromCallable(() -> render(index, item))
+                .subscribeOn(scheduler)
+                // A saturated encoding pool delays the batch instead of failing it.
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(5))
+                        .maxBackoff(Duration.ofMillis(500))
+                        .filter(e -> e instanceof RejectedExecutionException));
+    }
+
+    private static byte[] drain(ByteArrayOutputStream buffer) {
+        byte[] chunk = buffer.toByteArray();
+        buffer.reset();
+        return chunk;
+    }
+
+    @Override
+    public void writeZip(Iterator<QRCodeBatchItem> items, OutputStream outputStream) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(outputStream);
+        Deque<Future<BatchEntry>> pending = new ArrayDeque<>(window);
+        String readError = null;
+        int index = 0;
+        try {
+            while (true) {
+                while (readError == null && pending.size() < window) {
+                    QRCodeBatchItem item;
+                    try {
+                        if (!items.hasNext()) {
+                            break;
+                        }
+                        item = items.next();
+                    } catch (RuntimeException e) {
+                        // The request body itself is unreadable from here on; keep what was read so far.
+                        readError = "Could not read batch item " + (index + 1) + ": " + e.getMessage();
+                        break;
+                    }
+                    pending.addLast(submit(++index, item));
+                }
+                if (pending.isEmpty()) {
+                    break;
+                }
+                writeEntry(zip, await(pending.removeFirst()));
+            }
+            if (readError != null) {
+                writeEntry(zip, BatchEntry.error("batch.error.txt", readError));
+            }
+            zip.finish();
+            zip.flush();
+        } finally {
+            for (Future<BatchEntry> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private Future<BatchEntry> submit(int index, QRCodeBatchItem item) {
+        try {
+            return qrEncodingExecutor.submit(() -> render(index, item));
+        } catch (RejectedExecutionException e) {
+            // The encoding pool is saturated: encode on the streaming thread, which also slows down
+            // reading this batch until the pool catches up.
+            return CompletableFuture.completedFuture(render(index, item));
+        }
+    }
+
+    private BatchEntry render(int index, QRCodeBatchItem item) {
+        String baseName = String.format(Locale.ROOT, "%06d", index);
+        String fileName = sanitizeFileName(item.getFileName());
+        if (fileName != null) {
+            baseName += '-' + fileName;
+        }
+        if (item.getParseError() != null) {
+            return BatchEntry.error(baseName + ".error.txt", item.getParseError());
+        }
+        try {
+            if (item.getContent() == null || item.getContent().isEmpty()) {
+                throw new IllegalArgumentException("Found empty contents");
+            }
+            DKG_ErrorCorrectionLevel errorCorrectionLevel = item.getErrorCorrection() == null
+                    ? DKG_ErrorCorrectionLevel.L
+                    : DKG_ErrorCorrectionLevel.valueOf(item.getErrorCorrection().toUpperCase(Locale.ROOT));
+            byte[] image = qrCodeGenerateService.getQRCodeImage(item.getContent(), item.getWidth(), item.getHeight(),
+                    errorCorrectionLevel);
+            return BatchEntry.image(baseName + ".png", image);
+        } catch (Exception e) {
+            return BatchEntry.error(baseName + ".error.txt", e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private static BatchEntry await(Future<BatchEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a batch item");
+        } catch (ExecutionException e) {
+            throw new IOException("Batch item failed", e.getCause());
+        }
+    }
+
+    private static void writeEntry(ZipOutputStream zip, BatchEntry entry) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(entry.name);
+        if (entry.stored) {
+            // PNG data is already deflated; storing it avoids a second, useless compression pass.
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(entry.data.length);
+            zipEntry.setCompressedSize(entry.data.length);
+            zipEntry.setCrc(entry.crc);
+        }
+        zip.putNextEntry(zipEntry);
+        zip.write(entry.data);
+        zip.closeEntry();
+        // Hand each finished entry to the client instead of waiting for the buffer to fill.
+        zip.flush();
+    }
+
+    // Keeps only characters that are safe in a ZIP entry name on every platform.
+    private static String sanitizeFileName(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+        String name = fileName.replaceAll("(?i)\\.png$", "").replaceAll("[^A-Za-z0-9._-]", "_");
+        if (name.length() > 100) {
+            name = name.substring(0, 100);
+        }
+        return name.isEmpty() ? null : name;
+    }
+
+    private static final class BatchEntry {
+
+        private final String name;
+        private final byte[] data;
+        private final boolean stored;
+        private final long crc;
+
+        private BatchEntry(String name, byte[] data, boolean stored, long crc) {
+            this.name = name;
+            this.data = data;
+            this.stored = stored;
+            this.crc = crc;
+        }
+
+        static BatchEntry image(String name, byte[] data) {
+            // Computed on the worker thread, off the streaming thread.
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            return new BatchEntry(name, data, true, crc.getValue());
+        }
+
+        static BatchEntry error(String name, String message) {
+            return new BatchEntry(name, message.getBytes(StandardCharsets.UTF_8), false, 0L);
+        }
+    }
+}
@@ -1,17 +1,81 @@
 package com.dkg.qrservice.service.impl;
 
+import com.dkg.qrservice.service.QRCodeAdmissionControl;
+import com.dkg.qrservice.service.QRCodeEncodeEvent;
+import com.dkg.qrservice.service.QRCodeEncodeMetrics;
 import com.dkg.qrservice.service.QRCodeGenerateService;
+import com.dkg.qrservice.service.QRCodeInvalidRequestException;
+import com.dkg.qrservice.service.QRCodeOverloadedException;
+import com.dkg.qrservice.service.QRCodeRequestKey;
+import com.dkg.qrservice.service.QRCodeServerTiming;
+import com.dkg.qrservice.service.QRCodeStreamedImage;
 import com.dkg.qrservice.util.*;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
-public class QRCodeGenerateServiceImpl implements QRCodeGenerateService {
+public class QRCodeGenerateServiceImpl implements QRCodeGenerateService, MeterBinder {
+
+    private final Cache<QRCodeRequestKey, byte[]> qrCodeCache;
+    private final Executor qrEncodingExecutor;
+    private final QRCodeAdmissionControl admissionControl;
+    private final QRCodeEncodeMetrics encodeMetrics;
+    private final DKG_MaskSelection maskSelection;
+    private final int maxDimension;
+    // Renders in progress; identical concurrent requests wait for the same one instead of encoding again.
+    private final ConcurrentMap<QRCodeRequestKey, RenderFlight> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder coalescedRequests = new LongAdder();
+    // Per-thread scratch buffer that images are written into before their exact-size copy is cached.
+    private final ThreadLocal<RenderBuffer> renderBuffers = ThreadLocal.withInitial(RenderBuffer::new);
+
+    public QRCodeGenerateServiceImpl(Cache<QRCodeRequestKey, byte[]> qrCodeCache,
+                                     @Qualifier("qrEncodingExecutor") Executor qrEncodingExecutor,
+                                     QRCodeAdmissionControl admissionControl,
+                                     QRCodeEncodeMetrics encodeMetrics,
+                                     @Value("${qr.encoding.mask-selection:PRUNING}") DKG_MaskSelection maskSelection,
+                                     @Value("${qr.image.max-dimension:4000}") int maxDimension) {
+        this.qrCodeCache = qrCodeCache;
+        this.qrEncodingExecutor = qrEncodingExecutor;
+        this.admissionControl = admissionControl;
+        this.encodeMetrics = encodeMetrics;
+        this.maskSelection = maskSelection;
+        this.maxDimension = maxDimension;
+    }
+
+    @PostConstruct
+    public void calibrateMaskSelection() {
+        if (maskSelection == DKG_MaskSelection.PARALLEL) {
+            // Measure once at startup from which version on mask candidates are worth scoring in parallel.
+            DKG_ParallelMaskSelector.calibrate();
+        }
+    }
+
     @Override
     public Map<String, Object> downloadQRCode(String inputString, int width, int height) throws IOException, DKG_WriterException {
 
@@ -25,17 +89,427 @@ public class QRCodeGenerateServiceImpl implements QRCodeGenerateService {
 
     @Override
     public byte[] getQRCodeImage(String text, int width, int height) throws DKG_WriterException, IOException {
-        DKG_QRCodeDKGWriter dkgQrCodeWriter = new DKG_QRCodeDKGWriter();
-        Hashtable<DKG_EncodeHintType, DKG_ErrorCorrectionLevel> hintMap = new Hashtable<>();
-        hintMap.put(DKG_EncodeHintType.ERROR_CORRECTION, DKG_ErrorCorrectionLevel.L);
-        DKG_BitMatrix dkgBitMatrix = dkgQrCodeWriter.encode(text, DKG_BarcodeFormat.QR_CODE, width, height, hintMap);
+        return getOrRender(requestKey(text, width, height, DKG_ErrorCorrectionLevel.L), null);
+    }
 
-        ByteArrayOutputStream pngOutputStream = new ByteArrayOutputStream();
-        //MatrixToImageConfig con = new MatrixToImageConfig( 0xFF000002 , 0xFFFFC041 ) ;
+    @Override
+    public byte[] getQRCodeImage(String text, int width, int height, DKG_ErrorCorrectionLevel errorCorrectionLevel)
+            throws DKG_WriterException, IOException {
+        // Batch items are mostly one-off codes: rendered past the cache, so a large batch does not evict
+        // the interactive entries. The batch window already bounds them, so they are charged but never shed.
+        QRCodeRequestKey key = requestKey(text, width, height, errorCorrectionLevel);
+        long cost = admissionControl.estimateCost(key.getContent(), key.getWidth(), key.getHeight(),
+                key.getErrorCorrectionLevel());
+        admissionControl.acquire(cost, false);
+        try {
+            return renderQRCodeImage(key, encodeMetrics.newTimer());
+        } finally {
+            admissionControl.release(cost);
+        }
+    }
+
+    @Override
+    public byte[] getQRCodeImage(String text, int width, int height, String format, QRCodeServerTiming timing)
+            throws DKG_WriterException, IOException {
+        return getOrRender(requestKey(text, width, height, DKG_ErrorCorrectionLevel.L, format), timing);
+    }
 
-        //MatrixToImageWriter.writeToStream(bitMatrix, "PNG", pngOutputStream,con);
-        DKG_MatrixToImageWriter.writeToStream(dkgBitMatrix, "PNG", pngOutputStream);
-        byte[] pngData = pngOutputStream.toByteArray();
+    private byte[] getOrRender(QRCodeRequestKey key, QRCodeServerTiming timing)
+            throws DKG_WriterException, IOException {
+        long lookupStart = timing != null ? System.nanoTime() : 0;
+        // Cached images are shared between requests and must not be modified.
+        byte[] pngData = qrCodeCache.getIfPresent(key);
+        if (timing != null) {
+            timing.cacheLookup(System.nanoTime() - lookupStart, pngData != null);
+        }
+        if (pngData != null) {
+            return pngData;
+        }
+        RenderFlight flight = joinFlight(key, true, null, timing);
+        // Renders here unless a pool thread has already started; then waits for its bytes.
+        flight.run();
+        pngData = flight.await();
+        if (timing != null) {
+            timing.render(key.getFormat(), flight.timer);
+        }
         return pngData;
     }
+
+    @Override
+    public CompletableFuture<byte[]> getQRCodeImageAsync(String text, int width, int height) {
+        return getQRCodeImageAsync(text, width, height, "PNG", null);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> getQRCodeImageAsync(String text, int width, int height, String format,
+                                                         QRCodeServerTiming timing) {
+        QRCodeRequestKey key = requestKey(text, width, height, DKG_ErrorCorrectionLevel.L, format);
+        long lookupStart = timing != null ? System.nanoTime() : 0;
+        byte[] pngData = qrCodeCache.getIfPresent(key);
+        if (timing != null) {
+            timing.cacheLookup(System.nanoTime() - lookupStart, pngData != null);
+        }
+        if (pngData != null) {
+            // A hit is answered on the calling thread without a hand-off.
+            return CompletableFuture.completedFuture(pngData);
+        }
+        RenderFlight flight = joinFlight(key, true, qrEncodingExecutor, timing);
+        if (timing == null) {
+            return flight;
+        }
+        // The flight publishes its timer before completing, so it is visible to this callback.
+        return flight.thenApply(renderedPng -> {
+            timing.render(key.getFormat(), flight.timer);
+            return renderedPng;
+        });
+    }
+
+    @Override
+    public CompletableFuture<QRCodeStreamedImage> encodeQRCodeAsync(String text, int width, int height, String format,
+                                                                    QRCodeServerTiming timing) {
+        QRCodeRequestKey key = requestKey(text, width, height, DKG_ErrorCorrectionLevel.L, format);
+        // Only the encode counts; streamed formats do not rasterize at the output size.
+        long cost = admissionControl.estimateCost(key.getContent(), 0, 0, key.getErrorCorrectionLevel());
+        admissionControl.acquire(cost, true);
+        CompletableFuture<QRCodeStreamedImage> image;
+        try {
+            image = CompletableFuture.supplyAsync(() -> {
+                DKG_EncodeTimer timer = encodeMetrics.newTimer();
+                if (timer == null && timing != null) {
+                    timer = new DKG_EncodeTimer();
+                }
+                try {
+                    return encodeImage(key, timer);
+                } catch (DKG_WriterException e) {
+                    throw new CompletionException(e);
+                }
+            }, qrEncodingExecutor);
+        } catch (RejectedExecutionException e) {
+            admissionControl.release(cost);
+            throw e;
+        }
+        image.whenComplete((encoded, e) -> admissionControl.release(cost));
+        if (timing == null) {
+            return image;
+        }
+        return image.thenApply(encoded -> {
+            timing.render(key.getFormat(), ((EncodedImage) encoded).timer);
+            return encoded;
+        });
+    }
+
+    @Override
+    public QRCodeStreamedImage encodeQRCode(String text, int width, int height, String format,
+                                            QRCodeServerTiming timing) throws DKG_WriterException {
+        QRCodeRequestKey key = requestKey(text, width, height, DKG_ErrorCorrectionLevel.L, format);
+        long cost = admissionControl.estimateCost(key.getContent(), 0, 0, key.getErrorCorrectionLevel());
+        admissionControl.acquire(cost, true);
+        try {
+            DKG_EncodeTimer timer = encodeMetrics.newTimer();
+            if (timer == null && timing != null) {
+                timer = new DKG_EncodeTimer();
+            }
+            EncodedImage image = encodeImage(key, timer);
+            if (timing != null) {
+                timing.render(key.getFormat(), image.timer);
+            }
+            return image;
+        } finally {
+            admissionControl.release(cost);
+        }
+    }
+
+    @Override
+    public String getQRCodeETag(String text, int width, int height) {
+        return getQRCodeETag(text, width, height, "PNG");
+    }
+
+    @Override
+    public String getQRCodeETag(String text, int width, int height, String format) {
+        return requestKey(text, width, height, DKG_ErrorCorrectionLevel.L, format).toETag();
+    }
+
+    /**
+     * Publishes the render counters as "qr.render.count" and "qr.render.coalesced" under
+     * /actuator/metrics, next to the cache statistics endpoint that reports the same values.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("qr.render.count", renders, LongAdder::sum)
+                .description("QR code images rendered after a cache miss")
+                .register(registry);
+        FunctionCounter.builder("qr.render.coalesced", coalescedRequests, LongAdder::sum)
+                .description("Requests that waited for an identical render already in flight")
+                .register(registry);
+    }
+
+    @Override
+    public Map<String, Object> getCacheStatistics() {
+        CacheStats stats = qrCodeCache.stats();
+        Map<String, Object> statsMap = new LinkedHashMap<>();
+        statsMap.put("entries", qrCodeCache.estimatedSize());
+        statsMap.put("hitCount", stats.hitCount());
+        statsMap.put("missCount", stats.missCount());
+        statsMap.put("hitRate", stats.hitRate());
+        statsMap.put("evictionCount", stats.evictionCount());
+        statsMap.put("evictionWeightBytes", stats.evictionWeight());
+        statsMap.put("renderCount", renders.sum());
+        statsMap.put("coalescedCount", coalescedRequests.sum());
+        statsMap.put("inFlightRenders", inFlight.size());
+        statsMap.put("admissionBudget", admissionControl.getBudget());
+        statsMap.put("inFlightCost", admissionControl.getInFlightCost());
+        statsMap.put("admittedCount", admissionControl.getAdmittedCount());
+        statsMap.put("shedCount", admissionControl.getShedCount());
+        return statsMap;
+    }
+
+    private QRCodeRequestKey requestKey(String text, int width, int height,
+                                        DKG_ErrorCorrectionLevel errorCorrectionLevel) {
+        return requestKey(text, width, height, errorCorrectionLevel, "PNG");
+    }
+
+    private QRCodeRequestKey requestKey(String text, int width, int height,
+                                        DKG_ErrorCorrectionLevel errorCorrectionLevel, String format) {
+        if (width < 0 || height < 0 || width > maxDimension || height > maxDimension) {
+            throw new QRCodeInvalidRequestException("width and height must be between 0 and " + maxDimension
+                    + ", got " + width + "x" + height);
+        }
+        if (DKG_MatrixToImageWriter.isModuleMatrixFormat(format)) {
+            // The module matrix does not depend on the output size; one entry serves every size.
+            width = 0;
+            height = 0;
+        }
+        return new QRCodeRequestKey(text, width, height, errorCorrectionLevel,
+                DKG_MatrixToImageConfig.BLACK, DKG_MatrixToImageConfig.WHITE, format);
+    }
+
+    /**
+     * Returns the render in progress for "key", or starts a new one: charges its estimated cost to
+     * admission control, which may shed it, and submits it to "executor" if one is given. A non-null
+     * "timing" asks for the render to be timed even when stage metrics are disabled.
+     */
+    private RenderFlight joinFlight(QRCodeRequestKey key, boolean shed, Executor executor, QRCodeServerTiming timing) {
+        RenderFlight flight = new RenderFlight(key);
+        flight.timingRequested = timing != null;
+        RenderFlight existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalescedRequests.increment();
+            if (timing != null) {
+                // Too late to time the render if it has already started; the header then omits its stages.
+                existing.timingRequested = true;
+                timing.coalesced();
+            }
+            return existing;
+        }
+        long cost = admissionControl.estimateCost(key.getContent(), key.getWidth(), key.getHeight(),
+                key.getErrorCorrectionLevel());
+        try {
+            admissionControl.acquire(cost, shed);
+        } catch (QRCodeOverloadedException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        flight.whenComplete((pngData, e) -> admissionControl.release(cost));
+        if (executor != null) {
+            try {
+                executor.execute(flight);
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(key, flight);
+                flight.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return flight;
+    }
+
+    /**
+     * One render shared by every concurrent request for the same key. Whichever thread claims it first
+     * renders, either the pool thread it was submitted to or a synchronous caller that joined before
+     * that thread started. A synchronous caller therefore never waits on a render that is still
+     * queued behind it. The outcome, bytes or an encoding failure, completes the future for all
+     * waiters. A rendering thread that is interrupted, because its own caller was cancelled, hands the
+     * render over to the encoding pool instead, so the other waiters still get their bytes.
+     */
+    private final class RenderFlight extends CompletableFuture<byte[]> implements Runnable {
+
+        private final QRCodeRequestKey key;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        volatile boolean timingRequested;
+        // Set before the flight completes; null when the render was not timed.
+        volatile DKG_EncodeTimer timer;
+
+        RenderFlight(QRCodeRequestKey key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            // Skips flights already done, e.g. shed before a pool thread picked them up.
+            if (isDone() || !claimed.compareAndSet(false, true)) {
+                return;
+            }
+            boolean handedOff = false;
+            try {
+                // A render that finished between the caller's cache miss and joining this flight.
+                byte[] pngData = qrCodeCache.getIfPresent(key);
+                if (pngData == null) {
+                    DKG_EncodeTimer encodeTimer = encodeMetrics.newTimer();
+                    if (encodeTimer == null && timingRequested) {
+                        encodeTimer = new DKG_EncodeTimer();
+                    }
+                    timer = encodeTimer;
+                    pngData = renderQRCodeImage(key, encodeTimer);
+                    renders.increment();
+                    qrCodeCache.put(key, pngData);
+                }
+                complete(pngData);
+            } catch (Throwable e) {
+                Throwable failure = e;
+                if (e instanceof InterruptedIOException || Thread.currentThread().isInterrupted()) {
+                    // The interrupt belongs to this thread's caller, not to the render: release the
+                    // claim and let the encoding pool finish it for the other waiters.
+                    claimed.set(false);
+                    try {
+                        qrEncodingExecutor.execute(this);
+                        handedOff = true;
+                        return;
+                    } catch (RejectedExecutionException rejected) {
+                        // Unless another waiter claimed it meanwhile, the saturated pool fails the flight.
+                        handedOff = !claimed.compareAndSet(false, true);
+                        if (handedOff) {
+                            return;
+                        }
+                        failure = rejected;
+                    }
+                }
+                completeExceptionally(failure);
+            } finally {
+                if (!handedOff) {
+                    inFlight.remove(key, this);
+                }
+            }
+        }
+
+        byte[] await() throws DKG_WriterException, IOException {
+            try {
+                return get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a QR code render");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof DKG_WriterException) {
+                    throw (DKG_WriterException) cause;
+                }
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    private byte[] renderQRCodeImage(QRCodeRequestKey key, DKG_EncodeTimer timer)
+            throws DKG_WriterException, IOException {
+        EncodedImage image = encodeImage(key, timer);
+
+        if (Thread.currentThread().isInterrupted()) {
+            // The request was cancelled, e.g. the client went away; skip compressing the image.
+            throw new InterruptedIOException("QR code rendering cancelled");
+        }
+
+        RenderBuffer imageOutputStream = renderBuffers.get();
+        try {
+            image.writeTo(imageOutputStream);
+            // The one copy of the image: the cached array that every response for this key is written from.
+            return imageOutputStream.toByteArray();
+        } finally {
+            if (!imageOutputStream.recycle()) {
+                renderBuffers.remove();
+            }
+        }
+    }
+
+    /**
+     * Output buffer reused by the thread that renders, so writing an image neither starts from a small
+     * array nor copies it on every growth step. Buffers that grew past MAX_RETAINED_SIZE for an
+     * unusually large image are dropped instead of being kept per thread.
+     */
+    private static final class RenderBuffer extends ByteArrayOutputStream {
+
+        private static final int INITIAL_SIZE = 16 * 1024;
+        private static final int MAX_RETAINED_SIZE = 256 * 1024;
+
+        RenderBuffer() {
+            super(INITIAL_SIZE);
+        }
+
+        // Empties the buffer for the next image; false if it is too large to keep.
+        boolean recycle() {
+            reset();
+            return buf.length <= MAX_RETAINED_SIZE;
+        }
+    }
+
+    private EncodedImage encodeImage(QRCodeRequestKey key, DKG_EncodeTimer timer) throws DKG_WriterException {
+        DKG_QRCodeDKGWriter dkgQrCodeWriter = new DKG_QRCodeDKGWriter();
+        Hashtable<DKG_EncodeHintType, Object> hintMap = new Hashtable<>();
+        hintMap.put(DKG_EncodeHintType.ERROR_CORRECTION, key.getErrorCorrectionLevel());
+        hintMap.put(DKG_EncodeHintType.QR_MASK_SELECTION, maskSelection);
+        QRCodeEncodeEvent event = new QRCodeEncodeEvent();
+        event.begin();
+        if (timer == null && event.isEnabled()) {
+            // A recording wants the event even with stage metrics off.
+            timer = new DKG_EncodeTimer();
+        }
+        if (timer != null) {
+            hintMap.put(DKG_EncodeHintType.QR_ENCODE_TIMER, timer);
+        }
+        // Render scanlines straight from the module matrix instead of a full-size DKG_BitMatrix.
+        DKG_QRCodeRaster dkgRaster = dkgQrCodeWriter.encodeRaster(key.getContent(), DKG_BarcodeFormat.QR_CODE,
+                key.getWidth(), key.getHeight(), hintMap);
+        return new EncodedImage(key, dkgRaster, timer, event);
+    }
+
+    /**
+     * An encoded symbol waiting to be written. Writing records the stage metrics and commits the
+     * Flight Recorder event, so both cover the image writer too.
+     */
+    private final class EncodedImage implements QRCodeStreamedImage {
+
+        private final QRCodeRequestKey key;
+        private final DKG_QRCodeRaster raster;
+        private final DKG_EncodeTimer timer;
+        private final QRCodeEncodeEvent event;
+
+        EncodedImage(QRCodeRequestKey key, DKG_QRCodeRaster raster, DKG_EncodeTimer timer, QRCodeEncodeEvent event) {
+            this.key = key;
+            this.raster = raster;
+            this.timer = timer;
+            this.event = event;
+        }
+
+        @Override
+        public String getFormat() {
+            return key.getFormat();
+        }
+
+        @Override
+        public void writeTo(OutputStream stream) throws IOException {
+            DKG_MatrixToImageConfig config = new DKG_MatrixToImageConfig(key.getOnColor(), key.getOffColor());
+            DKG_MatrixToImageWriter.writeToStream(raster, key.getFormat(), stream, config);
+            encodeMetrics.record(timer);
+            if (timer != null && event.shouldCommit()) {
+                event.populate(key.getContent().length(), timer);
+                event.commit();
+            }
+        }
+    }
 }
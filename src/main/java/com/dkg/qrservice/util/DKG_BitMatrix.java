@@ -359,6 +359,12 @@ public final class DKG_BitMatrix implements Cloneable {
     return rowSize;
   }
 
+  // Backing words: bit (x & 0x1f) of bits[y * rowSize + x / 32] is pixel (x, y). Callers must not
+  // modify the returned array.
+  int[] getBits() {
+    return bits;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (!(o instanceof DKG_BitMatrix)) {
@@ -0,0 +1,200 @@
+package com.dkg.qrservice.util;
+
+import java.util.Arrays;
+
+// Bit-packed mask penalty scorer, equal to the DKG_MaskUtil rules. Not thread safe.
+final class DKG_BitPackedMaskPenalty {
+
+  // Penalty weights from section 6.8.2.1
+  private static final int N1 = 3;
+  private static final int N2 = 3;
+  private static final int N3 = 40;
+  private static final int N4 = 10;
+
+  private final int dimension;
+  private final int words;
+  // rows[y * words + (x >>> 6)] bit (x & 63) is module (x, y); columns hold the transpose.
+  private final long[] rows;
+  private final long[] columns;
+  // Bits for module indices < dimension.
+  private final long[] valid;
+  private final long[] scratch1;
+  private final long[] scratch2;
+
+  DKG_BitPackedMaskPenalty(int dimension) {
+    this.dimension = dimension;
+    words = (dimension + 63) >>> 6;
+    rows = new long[dimension * words];
+    columns = new long[dimension * words];
+    valid = new long[words];
+    for (int i = 0; i < dimension; i++) {
+      valid[i >>> 6] |= 1L << i;
+    }
+    scratch1 = new long[words];
+    scratch2 = new long[words];
+  }
+
+  int calculateMaskPenalty(DKG_ByteMatrix matrix) {
+    load(matrix);
+    return applyMaskPenaltyRule1() + applyMaskPenaltyRule2() + applyMaskPenaltyRule3() + applyMaskPenaltyRule4();
+  }
+
+  // Pack "matrix", which must be dimension x dimension, into rows and columns.
+  void load(DKG_ByteMatrix matrix) {
+    Arrays.fill(rows, 0L);
+    Arrays.fill(columns, 0L);
+    byte[][] array = matrix.getArray();
+    for (int y = 0; y < dimension; y++) {
+      byte[] arrayY = array[y];
+      int rowOffset = y * words;
+      int columnWord = y >>> 6;
+      long columnBit = 1L << y;
+      for (int x = 0; x < dimension; x++) {
+        if (arrayY[x] == 1) {
+          rows[rowOffset + (x >>> 6)] |= 1L << x;
+          columns[x * words + columnWord] |= columnBit;
+        }
+      }
+    }
+  }
+
+  int getDimension() {
+    return dimension;
+  }
+
+  int applyMaskPenaltyRule1() {
+    return applyMaskPenaltyRule1(0, dimension);
+  }
+
+  // Rule 1 restricted to rows and columns from (inclusive) to to (exclusive).
+  int applyMaskPenaltyRule1(int from, int to) {
+    int penalty = 0;
+    for (int i = from; i < to; i++) {
+      penalty += applyMaskPenaltyRule1Line(rows, i * words);
+      penalty += applyMaskPenaltyRule1Line(columns, i * words);
+    }
+    return penalty;
+  }
+
+  int applyMaskPenaltyRule2() {
+    return applyMaskPenaltyRule2(0, dimension);
+  }
+
+  // Rule 2 restricted to 2x2 blocks whose top row is in [from, to).
+  int applyMaskPenaltyRule2(int from, int to) {
+    int penalty = 0;
+    long[] same = scratch1;
+    int last = Math.min(to, dimension - 1);
+    for (int y = from; y < last; y++) {
+      int top = y * words;
+      int bottom = top + words;
+      // same[x]: modules (x, y) and (x, y + 1) have the same colour.
+      for (int w = 0; w < words; w++) {
+        same[w] = ~(rows[top + w] ^ rows[bottom + w]) & valid[w];
+      }
+      for (int w = 0; w < words; w++) {
+        // Modules (x, y) and (x + 1, y) have the same colour; together with same[x] and same[x + 1]
+        // the whole 2x2 block does.
+        long horizontal = ~(rows[top + w] ^ shiftDown(rows, top, w, 1));
+        penalty += Long.bitCount(same[w] & shiftDown(same, 0, w, 1) & horizontal);
+      }
+    }
+    return N2 * penalty;
+  }
+
+  int applyMaskPenaltyRule3() {
+    return applyMaskPenaltyRule3(0, dimension);
+  }
+
+  // Rule 3 restricted to rows and columns from (inclusive) to to (exclusive).
+  int applyMaskPenaltyRule3(int from, int to) {
+    int numPenalties = 0;
+    for (int i = from; i < to; i++) {
+      numPenalties += applyMaskPenaltyRule3Line(rows, i * words);
+      numPenalties += applyMaskPenaltyRule3Line(columns, i * words);
+    }
+    return numPenalties * N3;
+  }
+
+  int applyMaskPenaltyRule4() {
+    int numDarkCells = 0;
+    for (long row : rows) {
+      numDarkCells += Long.bitCount(row);
+    }
+    int numTotalCells = dimension * dimension;
+    int fivePercentVariances = Math.abs(numDarkCells * 2 - numTotalCells) * 10 / numTotalCells;
+    return fivePercentVariances * N4;
+  }
+
+  private int applyMaskPenaltyRule1Line(long[] bits, int offset) {
+    long[] same = scratch1;
+    long[] run = scratch2;
+    // same[i]: module i has the same colour as module i - 1.
+    for (int w = 0; w < words; w++) {
+      same[w] = ~(bits[offset + w] ^ shiftUp(bits, offset, w, 1)) & valid[w];
+    }
+    same[0] &= ~1L;
+    // run[i]: modules i - 4 .. i all have the same colour. A run of length n >= 5 sets n - 4 of
+    // these, so adding 2 per run gives its penalty N1 + (n - 5).
+    for (int w = 0; w < words; w++) {
+      run[w] = same[w] & shiftUp(same, 0, w, 1) & shiftUp(same, 0, w, 2) & shiftUp(same, 0, w, 3);
+    }
+    int penalty = 0;
+    for (int w = 0; w < words; w++) {
+      long runStarts = run[w] & ~shiftUp(run, 0, w, 1);
+      penalty += Long.bitCount(run[w]) + 2 * Long.bitCount(runStarts);
+    }
+    return penalty;
+  }
+
+  private int applyMaskPenaltyRule3Line(long[] bits, int offset) {
+    long[] light = scratch1;
+    for (int w = 0; w < words; w++) {
+      light[w] = ~bits[offset + w] & valid[w];
+    }
+    int numPenalties = 0;
+    for (int w = 0; w < words; w++) {
+      // Dark-light-dark-dark-dark-light-dark starting at module i.
+      long pattern = bits[offset + w]
+          & shiftDown(light, 0, w, 1)
+          & shiftDown(bits, offset, w, 2)
+          & shiftDown(bits, offset, w, 3)
+          & shiftDown(bits, offset, w, 4)
+          & shiftDown(light, 0, w, 5)
+          & shiftDown(bits, offset, w, 6);
+      if (pattern == 0) {
+        continue;
+      }
+      // Four light modules right before or right after the pattern, inside the symbol.
+      long lightBefore = shiftUp(light, 0, w, 1)
+          & shiftUp(light, 0, w, 2)
+          & shiftUp(light, 0, w, 3)
+          & shiftUp(light, 0, w, 4);
+      long lightAfter = shiftDown(light, 0, w, 7)
+          & shiftDown(light, 0, w, 8)
+          & shiftDown(light, 0, w, 9)
+          & shiftDown(light, 0, w, 10);
+      numPenalties += Long.bitCount(pattern & (lightBefore | lightAfter));
+    }
+    return numPenalties;
+  }
+
+  // Word "w" of the line at "offset" with bit i moved to i + k, for 0 < k < 64.
+  private long shiftUp(long[] bits, int offset, int w, int k) {
+    long word = bits[offset + w] << k;
+    if (w > 0) {
+      word |= bits[offset + w - 1] >>> (64 - k);
+    }
+    return word;
+  }
+
+  // Word "w" of the line at "offset" with bit i + k moved to i, for 0 < k < 64.
+  private long shiftDown(long[] bits, int offset, int w, int k) {
+    long word = bits[offset + w] >>> k;
+    if (w + 1 < words) {
+      word |= bits[offset + w + 1] << (64 - k);
+    }
+    return word;
+  }
+
+}
@@ -0,0 +1,115 @@
+package com.dkg.qrservice.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Data module cells of one version in zigzag order, with the bit each mask flips there.
+final class DKG_DataPlacement {
+
+  private static final AtomicReferenceArray<DKG_DataPlacement> PLACEMENTS = new AtomicReferenceArray<>(40);
+
+  // (y << 8) | x of each data module, in placement order.
+  private final int[] coordinates;
+  // maskBits[maskPattern][i / 32] bit (i & 0x1F) is set when the mask flips data module i; same
+  // layout as DKG_BitArray.
+  private final int[][] maskBits;
+
+  private DKG_DataPlacement(int[] coordinates, int[][] maskBits) {
+    this.coordinates = coordinates;
+    this.maskBits = maskBits;
+  }
+
+  static DKG_DataPlacement forVersion(DKG_Version DKGVersion) {
+    int index = DKGVersion.getVersionNumber() - 1;
+    DKG_DataPlacement placement = PLACEMENTS.get(index);
+    if (placement == null) {
+      // Concurrent first uses may build it twice; the results are identical.
+      placement = build(DKGVersion);
+      PLACEMENTS.set(index, placement);
+    }
+    return placement;
+  }
+
+  // Number of data modules, i.e. the capacity in bits including remainder bits.
+  int getNumModules() {
+    return coordinates.length;
+  }
+
+  // Embed "dataBits" into the data cells of "matrix", padding with 0 bits and applying
+  // "maskPattern", or no mask if it is -1. Function pattern cells are left untouched.
+  void embedDataBits(DKG_BitArray dataBits, int maskPattern, DKG_ByteMatrix matrix) throws DKG_WriterException {
+    int numBits = dataBits.getSize();
+    if (numBits > coordinates.length) {
+      throw new DKG_WriterException("Not all bits consumed: " + coordinates.length + '/' + numBits);
+    }
+    int[] data = dataBits.getBitArray();
+    int[] mask = maskPattern == -1 ? null : maskBits[maskPattern];
+    byte[][] array = matrix.getArray();
+    int numModules = coordinates.length;
+    for (int i = 0, word = 0; i < numModules; i += 32, word++) {
+      int bits = 0;
+      if (i < numBits) {
+        bits = data[word];
+        if (numBits - i < 32) {
+          // Ignore whatever lies past the end of the data bits.
+          bits &= (1 << (numBits - i)) - 1;
+        }
+      }
+      if (mask != null) {
+        bits ^= mask[word];
+      }
+      int end = Math.min(numModules - i, 32);
+      for (int j = 0; j < end; j++) {
+        int coordinate = coordinates[i + j];
+        array[coordinate >>> 8][coordinate & 0xFF] = (byte) ((bits >>> j) & 1);
+      }
+    }
+  }
+
+  private static DKG_DataPlacement build(DKG_Version DKGVersion) {
+    int dimension = DKGVersion.getDimensionForVersion();
+    DKG_ByteMatrix template = new DKG_ByteMatrix(dimension, dimension);
+    DKG_FunctionPatternTemplate.forVersion(DKGVersion).copyTo(template);
+
+    // Same walk as the original embedDataBits(), recording cells instead of filling them.
+    int[] coordinates = new int[dimension * dimension];
+    int numModules = 0;
+    int direction = -1;
+    // Start from the right bottom cell.
+    int x = dimension - 1;
+    int y = dimension - 1;
+    while (x > 0) {
+      // Skip the vertical timing pattern.
+      if (x == 6) {
+        x -= 1;
+      }
+      while (y >= 0 && y < dimension) {
+        for (int i = 0; i < 2; ++i) {
+          int xx = x - i;
+          // Skip the cell if it's not empty.
+          if (template.get(xx, y) == -1) {
+            coordinates[numModules++] = (y << 8) | xx;
+          }
+        }
+        y += direction;
+      }
+      direction = -direction;  // Reverse the direction.
+      y += direction;
+      x -= 2;  // Move to the left.
+    }
+
+    int[] placementOrder = new int[numModules];
+    System.arraycopy(coordinates, 0, placementOrder, 0, numModules);
+    int[][] maskBits = new int[DKG_QRCode.NUM_MASK_PATTERNS][(numModules + 31) / 32];
+    for (int maskPattern = 0; maskPattern < DKG_QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+      int[] bits = maskBits[maskPattern];
+      for (int i = 0; i < numModules; i++) {
+        int coordinate = placementOrder[i];
+        if (DKG_MaskUtil.getDataMaskBit(maskPattern, coordinate & 0xFF, coordinate >>> 8)) {
+          bits[i / 32] |= 1 << (i & 0x1F);
+        }
+      }
+    }
+    return new DKG_DataPlacement(placementOrder, maskBits);
+  }
+
+}
@@ -35,6 +35,13 @@ public enum DKG_EncodeHintType {
 
   QR_COMPACT,
 
+  QR_MASK_PENALTY_SCORER,
+
+  QR_MASK_SELECTION,
+
+  // A DKG_EncodeTimer that collects stage timings for this encode.
+  QR_ENCODE_TIMER,
+
   GS1_FORMAT,
 
   FORCE_CODE_SET,
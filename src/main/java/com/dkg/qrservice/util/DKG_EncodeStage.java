@@ -0,0 +1,30 @@
+package com.dkg.qrservice.util;
+
+// Stages of the encode and render pipeline timed by DKG_EncodeTimer.
+public enum DKG_EncodeStage {
+
+  // Choosing the mode and writing the ECI / FNC1 / mode headers.
+  MODE_SELECTION,
+
+  // Converting the content to data bits, including the length field and terminator.
+  DATA_ENCODING,
+
+  // recommendVersion(), or checking the version given by the QR_VERSION hint.
+  VERSION_SELECTION,
+
+  // Reed-Solomon EC codewords and interleaving (interleaveWithECBytes).
+  ERROR_CORRECTION,
+
+  // Laying out function patterns and data modules.
+  MATRIX_BUILD,
+
+  // Scoring mask candidates and applying the chosen one.
+  MASK_SELECTION,
+
+  // Scaling the module matrix to output pixels (renderResult / DKG_QRCodeRaster rows).
+  RENDER,
+
+  // Image serialization, e.g. PNG filtering and deflate.
+  IMAGE_WRITE,
+
+}
@@ -0,0 +1,115 @@
+package com.dkg.qrservice.util;
+
+// Stage timings and symbol details of one encode, collected when passed as the QR_ENCODE_TIMER hint.
+public final class DKG_EncodeTimer {
+
+  private static final DKG_EncodeStage[] STAGES = DKG_EncodeStage.values();
+
+  private final long[] stageNanos = new long[STAGES.length];
+  private long lapStart;
+
+  private DKG_QR_Mode mode;
+  private DKG_ErrorCorrectionLevel ecLevel;
+  private int version;
+  private int maskPattern = -1;
+  private int dimension;
+  private int outputWidth;
+  private int outputHeight;
+  private long imageBytes;
+
+  public DKG_EncodeTimer() {
+    lapStart = System.nanoTime();
+  }
+
+  // Starts a new lap without charging the time since the previous one to any stage.
+  public void restart() {
+    lapStart = System.nanoTime();
+  }
+
+  // Charges the time since the previous lap to "stage" and starts a new lap.
+  public void lap(DKG_EncodeStage stage) {
+    long now = System.nanoTime();
+    stageNanos[stage.ordinal()] += now - lapStart;
+    lapStart = now;
+  }
+
+  public void add(DKG_EncodeStage stage, long nanos) {
+    stageNanos[stage.ordinal()] += nanos;
+  }
+
+  public long getStageNanos(DKG_EncodeStage stage) {
+    return stageNanos[stage.ordinal()];
+  }
+
+  public long getTotalNanos() {
+    long total = 0;
+    for (long nanos : stageNanos) {
+      total += nanos;
+    }
+    return total;
+  }
+
+  void recordSymbol(DKG_QRCode code) {
+    mode = code.getMode();
+    ecLevel = code.getECLevel();
+    version = code.getVersion().getVersionNumber();
+    maskPattern = code.getMaskPattern();
+    dimension = code.getVersion().getDimensionForVersion();
+  }
+
+  void recordOutputSize(int width, int height) {
+    outputWidth = width;
+    outputHeight = height;
+  }
+
+  void addImageBytes(long bytes) {
+    imageBytes += bytes;
+  }
+
+  // Null until the symbol has been encoded.
+  public DKG_QR_Mode getMode() {
+    return mode;
+  }
+
+  public DKG_ErrorCorrectionLevel getECLevel() {
+    return ecLevel;
+  }
+
+  // 0 until the symbol has been encoded.
+  public int getVersion() {
+    return version;
+  }
+
+  public int getMaskPattern() {
+    return maskPattern;
+  }
+
+  // Modules per side.
+  public int getDimension() {
+    return dimension;
+  }
+
+  public int getOutputWidth() {
+    return outputWidth;
+  }
+
+  public int getOutputHeight() {
+    return outputHeight;
+  }
+
+  // Bytes written by DKG_PngWriter; 0 for other formats.
+  public long getImageBytes() {
+    return imageBytes;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder(128);
+    result.append("version=").append(version).append(" mode=").append(mode).append(" ecLevel=").append(ecLevel);
+    for (DKG_EncodeStage stage : STAGES) {
+      result.append(' ').append(stage).append('=').append(stageNanos[stage.ordinal()] / 1000).append("us");
+    }
+    return result.toString();
+  }
+
+}
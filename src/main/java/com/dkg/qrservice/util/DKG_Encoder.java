@@ -26,7 +26,11 @@ public final class DKG_Encoder {
 
   // The mask penalty calculation is complicated.  See Table 21 of JISX0510:2004 (p.45) for details.
   // Basically it applies four rules and summate all penalties.
-  private static int calculateMaskPenalty(DKG_ByteMatrix matrix) {
+  // "packedPenalty" selects the bit-packed scorer; null uses the DKG_MaskUtil rules directly.
+  static int calculateMaskPenalty(DKG_ByteMatrix matrix, DKG_BitPackedMaskPenalty packedPenalty) {
+    if (packedPenalty != null) {
+      return packedPenalty.calculateMaskPenalty(matrix);
+    }
     return DKG_MaskUtil.applyMaskPenaltyRule1(matrix)
         + DKG_MaskUtil.applyMaskPenaltyRule2(matrix)
         + DKG_MaskUtil.applyMaskPenaltyRule3(matrix)
@@ -46,6 +50,11 @@ public final class DKG_Encoder {
     DKG_BitArray headerAndDataBits;
     DKG_QR_Mode QRMode;
 
+    DKG_EncodeTimer timer = hints == null ? null : (DKG_EncodeTimer) hints.get(DKG_EncodeHintType.QR_ENCODE_TIMER);
+    if (timer != null) {
+      timer.restart();
+    }
+
     boolean hasGS1FormatHint = hints != null && hints.containsKey(DKG_EncodeHintType.GS1_FORMAT) &&
         Boolean.parseBoolean(hints.get(DKG_EncodeHintType.GS1_FORMAT).toString());
     boolean hasCompactionHint = hints != null && hints.containsKey(DKG_EncodeHintType.QR_COMPACT) &&
@@ -67,6 +76,10 @@ public final class DKG_Encoder {
       headerAndDataBits = new DKG_BitArray();
       rn.getBits(headerAndDataBits);
       DKGVersion = rn.getVersion();
+      if (timer != null) {
+        // The minimal encoder picks modes, segments and version together.
+        timer.lap(DKG_EncodeStage.DATA_ENCODING);
+      }
 
     } else {
     
@@ -94,11 +107,17 @@ public final class DKG_Encoder {
     
       // (With ECI in place,) Write the mode marker
       appendModeInfo(QRMode, headerBits);
+      if (timer != null) {
+        timer.lap(DKG_EncodeStage.MODE_SELECTION);
+      }
   
       // Collect data within the main segment, separately, to count its size if needed. Don't add it to
       // main payload yet.
       DKG_BitArray dataBits = new DKG_BitArray();
       appendBytes(content, QRMode, dataBits, encoding);
+      if (timer != null) {
+        timer.lap(DKG_EncodeStage.DATA_ENCODING);
+      }
   
       if (hints != null && hints.containsKey(DKG_EncodeHintType.QR_VERSION)) {
         int versionNumber = Integer.parseInt(hints.get(DKG_EncodeHintType.QR_VERSION).toString());
@@ -110,6 +129,9 @@ public final class DKG_Encoder {
       } else {
         DKGVersion = recommendVersion(ecLevel, QRMode, headerBits, dataBits);
       }
+      if (timer != null) {
+        timer.lap(DKG_EncodeStage.VERSION_SELECTION);
+      }
     
       headerAndDataBits = new DKG_BitArray();
       headerAndDataBits.appendBitArray(headerBits);
@@ -125,12 +147,18 @@ public final class DKG_Encoder {
 
     // Terminate the bits properly.
     terminateBits(numDataBytes, headerAndDataBits);
+    if (timer != null) {
+      timer.lap(DKG_EncodeStage.DATA_ENCODING);
+    }
 
     // Interleave data bits with error correction code.
     DKG_BitArray finalBits = interleaveWithECBytes(headerAndDataBits,
                                                DKGVersion.getTotalCodewords(),
                                                numDataBytes,
                                                ecBlocks.getNumBlocks());
+    if (timer != null) {
+      timer.lap(DKG_EncodeStage.ERROR_CORRECTION);
+    }
 
     DKG_QRCode DKGQrCode = new DKG_QRCode();
 
@@ -149,14 +177,30 @@ public final class DKG_Encoder {
       maskPattern = DKG_QRCode.isValidMaskPattern(hintMaskPattern) ? hintMaskPattern : -1;
     }
 
+    DKG_MaskPenaltyScorer scorer = DKG_MaskPenaltyScorer.BIT_PACKED;
+    if (hints != null && hints.containsKey(DKG_EncodeHintType.QR_MASK_PENALTY_SCORER)) {
+      scorer = DKG_MaskPenaltyScorer.valueOf(hints.get(DKG_EncodeHintType.QR_MASK_PENALTY_SCORER).toString());
+    }
+    DKG_MaskSelection maskSelection = DKG_MaskSelection.EXHAUSTIVE;
+    if (hints != null && hints.containsKey(DKG_EncodeHintType.QR_MASK_SELECTION)) {
+      maskSelection = DKG_MaskSelection.valueOf(hints.get(DKG_EncodeHintType.QR_MASK_SELECTION).toString());
+    }
+
     if (maskPattern == -1) {
-      maskPattern = chooseMaskPattern(finalBits, ecLevel, DKGVersion, matrix);
+      // The search leaves the symbol built with the chosen mask in "matrix".
+      maskPattern = chooseMaskPattern(finalBits, ecLevel, DKGVersion, scorer, maskSelection, matrix, timer);
+    } else {
+      DKG_MatrixUtil.buildMatrix(finalBits, ecLevel, DKGVersion, maskPattern, matrix);
+      if (timer != null) {
+        timer.lap(DKG_EncodeStage.MATRIX_BUILD);
+      }
     }
     DKGQrCode.setMaskPattern(maskPattern);
-
-    // Build the matrix and set it to "qrCode".
-    DKG_MatrixUtil.buildMatrix(finalBits, ecLevel, DKGVersion, maskPattern, matrix);
     DKGQrCode.setMatrix(matrix);
+    if (timer != null) {
+      timer.lap(DKG_EncodeStage.MASK_SELECTION);
+      timer.recordSymbol(DKGQrCode);
+    }
 
     return DKGQrCode;
   }
@@ -240,19 +284,45 @@ public final class DKG_Encoder {
   private static int chooseMaskPattern(DKG_BitArray bits,
                                        DKG_ErrorCorrectionLevel ecLevel,
                                        DKG_Version DKGVersion,
-                                       DKG_ByteMatrix matrix) throws DKG_WriterException {
+                                       DKG_MaskPenaltyScorer scorer,
+                                       DKG_MaskSelection maskSelection,
+                                       DKG_ByteMatrix matrix,
+                                       DKG_EncodeTimer timer) throws DKG_WriterException {
+
+    // Lay out the symbol once; each candidate is then a cheap XOR over the data region.
+    DKG_MaskCandidates candidates = new DKG_MaskCandidates(bits, ecLevel, DKGVersion);
+    if (timer != null) {
+      timer.lap(DKG_EncodeStage.MATRIX_BUILD);
+    }
+
+    if (maskSelection == DKG_MaskSelection.PARALLEL &&
+        DKGVersion.getVersionNumber() >= DKG_ParallelMaskSelector.getVersionThreshold()) {
+      int bestMaskPattern = DKG_ParallelMaskSelector.chooseMaskPattern(candidates, scorer, matrix.getWidth());
+      candidates.apply(bestMaskPattern, matrix);
+      return bestMaskPattern;
+    }
+    if (maskSelection == DKG_MaskSelection.PRUNING) {
+      return DKG_PruningMaskSelector.chooseMaskPattern(candidates, matrix);
+    }
+
+    DKG_BitPackedMaskPenalty packedPenalty = scorer == DKG_MaskPenaltyScorer.BIT_PACKED
+        ? new DKG_BitPackedMaskPenalty(matrix.getWidth())
+        : null;
 
     int minPenalty = Integer.MAX_VALUE;  // Lower penalty is better.
     int bestMaskPattern = -1;
     // We try all mask patterns to choose the best one.
     for (int maskPattern = 0; maskPattern < DKG_QRCode.NUM_MASK_PATTERNS; maskPattern++) {
-      DKG_MatrixUtil.buildMatrix(bits, ecLevel, DKGVersion, maskPattern, matrix);
-      int penalty = calculateMaskPenalty(matrix);
+      candidates.apply(maskPattern, matrix);
+      int penalty = calculateMaskPenalty(matrix, packedPenalty);
       if (penalty < minPenalty) {
         minPenalty = penalty;
         bestMaskPattern = maskPattern;
       }
     }
+    if (bestMaskPattern != DKG_QRCode.NUM_MASK_PATTERNS - 1) {
+      candidates.apply(bestMaskPattern, matrix);
+    }
     return bestMaskPattern;
   }
 
@@ -432,17 +502,8 @@ public final class DKG_Encoder {
   }
 
   static byte[] generateECBytes(byte[] dataBytes, int numEcBytesInBlock) {
-    int numDataBytes = dataBytes.length;
-    int[] toEncode = new int[numDataBytes + numEcBytesInBlock];
-    for (int i = 0; i < numDataBytes; i++) {
-      toEncode[i] = dataBytes[i] & 0xFF;
-    }
-    new DKG_ReedSolomonEncoder(DKG_GenericGF.QR_CODE_FIELD_256).encode(toEncode, numEcBytesInBlock);
-
     byte[] ecBytes = new byte[numEcBytesInBlock];
-    for (int i = 0; i < numEcBytesInBlock; i++) {
-      ecBytes[i] = (byte) toEncode[numDataBytes + i];
-    }
+    DKG_QRGeneratorRegistry.getEncoder(numEcBytesInBlock).encode(dataBytes, 0, dataBytes.length, ecBytes, 0);
     return ecBytes;
   }
 
@@ -0,0 +1,99 @@
+package com.dkg.qrservice.util;
+
+// Function pattern layer of each version, built once and copied into every symbol.
+final class DKG_FunctionPatternTemplate {
+
+  private static final DKG_FunctionPatternTemplate[] TEMPLATES = buildTemplates();
+
+  // TYPE_INFO_BITS[(ecLevel.getBits() << 3) | maskPattern] holds the 15 masked type info bits, MSB
+  // first as produced by DKG_MatrixUtil.makeTypeInfoBits().
+  private static final int[] TYPE_INFO_BITS = buildTypeInfoBits();
+
+  // Function modules; -1 for cells left to the data bits.
+  private final byte[][] modules;
+  // 1 for cells taken by function patterns, version info or type info, 0 for data cells.
+  private final byte[][] reserved;
+
+  private DKG_FunctionPatternTemplate(byte[][] modules, byte[][] reserved) {
+    this.modules = modules;
+    this.reserved = reserved;
+  }
+
+  static DKG_FunctionPatternTemplate forVersion(DKG_Version DKGVersion) {
+    return TEMPLATES[DKGVersion.getVersionNumber() - 1];
+  }
+
+  static int getTypeInfoBits(DKG_ErrorCorrectionLevel ecLevel, int maskPattern) {
+    return TYPE_INFO_BITS[(ecLevel.getBits() << 3) | maskPattern];
+  }
+
+  int getDimension() {
+    return modules.length;
+  }
+
+  // Overwrite "matrix", which must have the template's dimension, with the function modules.
+  void copyTo(DKG_ByteMatrix matrix) {
+    byte[][] array = matrix.getArray();
+    for (int y = 0; y < modules.length; y++) {
+      System.arraycopy(modules[y], 0, array[y], 0, modules[y].length);
+    }
+  }
+
+  // Row "y" of the reserved cell bitmap. Callers must not modify the returned array.
+  byte[] getReservedRow(int y) {
+    return reserved[y];
+  }
+
+  private static DKG_FunctionPatternTemplate build(DKG_Version DKGVersion) throws DKG_WriterException {
+    int dimension = DKGVersion.getDimensionForVersion();
+    DKG_ByteMatrix matrix = new DKG_ByteMatrix(dimension, dimension);
+    DKG_MatrixUtil.clearMatrix(matrix);
+    DKG_MatrixUtil.embedBasicPatterns(DKGVersion, matrix);
+    DKG_MatrixUtil.embedTypeInfoBits(0, matrix);
+    DKG_MatrixUtil.maybeEmbedVersionInfo(DKGVersion, matrix);
+
+    byte[][] modules = matrix.getArray();
+    byte[][] reserved = new byte[dimension][dimension];
+    for (int y = 0; y < dimension; y++) {
+      for (int x = 0; x < dimension; x++) {
+        if (modules[y][x] != -1) {
+          reserved[y][x] = 1;
+        }
+      }
+    }
+    return new DKG_FunctionPatternTemplate(modules, reserved);
+  }
+
+  private static DKG_FunctionPatternTemplate[] buildTemplates() {
+    DKG_FunctionPatternTemplate[] templates = new DKG_FunctionPatternTemplate[40];
+    try {
+      for (int versionNumber = 1; versionNumber <= templates.length; versionNumber++) {
+        templates[versionNumber - 1] = build(DKG_Version.getVersionForNumber(versionNumber));
+      }
+    } catch (DKG_WriterException e) {
+      throw new IllegalStateException(e);
+    }
+    return templates;
+  }
+
+  private static int[] buildTypeInfoBits() {
+    int[] typeInfoBits = new int[32];
+    try {
+      for (DKG_ErrorCorrectionLevel ecLevel : DKG_ErrorCorrectionLevel.values()) {
+        for (int maskPattern = 0; maskPattern < DKG_QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+          DKG_BitArray bits = new DKG_BitArray();
+          DKG_MatrixUtil.makeTypeInfoBits(ecLevel, maskPattern, bits);
+          int value = 0;
+          for (int i = 0; i < bits.getSize(); i++) {
+            value = (value << 1) | (bits.get(i) ? 1 : 0);
+          }
+          typeInfoBits[(ecLevel.getBits() << 3) | maskPattern] = value;
+        }
+      }
+    } catch (DKG_WriterException e) {
+      throw new IllegalStateException(e);
+    }
+    return typeInfoBits;
+  }
+
+}
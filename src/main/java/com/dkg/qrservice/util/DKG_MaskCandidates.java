@@ -0,0 +1,69 @@
+package com.dkg.qrservice.util;
+
+import java.util.Random;
+
+// Builds the eight mask candidates of a symbol from one unmasked layout.
+final class DKG_MaskCandidates {
+
+  private final DKG_ErrorCorrectionLevel ecLevel;
+  private final DKG_FunctionPatternTemplate template;
+  private final DKG_ByteMatrix unmasked;
+
+  DKG_MaskCandidates(DKG_BitArray dataBits,
+                     DKG_ErrorCorrectionLevel ecLevel,
+                     DKG_Version DKGVersion) throws DKG_WriterException {
+    this.ecLevel = ecLevel;
+    template = DKG_FunctionPatternTemplate.forVersion(DKGVersion);
+    int dimension = template.getDimension();
+    unmasked = new DKG_ByteMatrix(dimension, dimension);
+    // The template reserves the type info cells; their values are rewritten for every candidate.
+    template.copyTo(unmasked);
+    DKG_MatrixUtil.embedDataBits(dataBits, -1, unmasked);
+  }
+
+  // Candidates for a random byte mode payload that fills "version" at "ecLevel", for calibration,
+  // tests and benchmarks.
+  static DKG_MaskCandidates sample(DKG_Version version, DKG_ErrorCorrectionLevel ecLevel, Random random)
+      throws DKG_WriterException {
+    return new DKG_MaskCandidates(sampleDataBits(version, ecLevel, random), ecLevel, version);
+  }
+
+  // Interleaved data and EC bits of a random byte mode payload that fills "version" at "ecLevel".
+  static DKG_BitArray sampleDataBits(DKG_Version version, DKG_ErrorCorrectionLevel ecLevel, Random random)
+      throws DKG_WriterException {
+    DKG_Version.ECBlocks ecBlocks = version.getECBlocksForLevel(ecLevel);
+    int numDataBytes = version.getTotalCodewords() - ecBlocks.getTotalECCodewords();
+    byte[] content = new byte[numDataBytes - 3];
+    random.nextBytes(content);
+
+    DKG_BitArray headerAndDataBits = new DKG_BitArray();
+    DKG_Encoder.appendModeInfo(DKG_QR_Mode.BYTE, headerAndDataBits);
+    DKG_Encoder.appendLengthInfo(content.length, version, DKG_QR_Mode.BYTE, headerAndDataBits);
+    for (byte b : content) {
+      headerAndDataBits.appendBits(b & 0xFF, 8);
+    }
+    DKG_Encoder.terminateBits(numDataBytes, headerAndDataBits);
+    return DKG_Encoder.interleaveWithECBytes(headerAndDataBits,
+        version.getTotalCodewords(), numDataBytes, ecBlocks.getNumBlocks());
+  }
+
+  // Store the symbol masked with "maskPattern" in "matrix", which must have the symbol's dimension.
+  // The result is identical to DKG_MatrixUtil.buildMatrix() with the same arguments.
+  void apply(int maskPattern, DKG_ByteMatrix matrix) throws DKG_WriterException {
+    byte[][] source = unmasked.getArray();
+    byte[][] target = matrix.getArray();
+    int dimension = source.length;
+    for (int y = 0; y < dimension; y++) {
+      byte[] sourceY = source[y];
+      byte[] targetY = target[y];
+      byte[] reservedY = template.getReservedRow(y);
+      byte[] maskY = DKG_MaskUtil.getDataMaskRow(maskPattern, y);
+      for (int x = 0; x < dimension; x++) {
+        // ~1 clears the mask bit on reserved cells, ~0 keeps it on data cells.
+        targetY[x] = (byte) (sourceY[x] ^ (maskY[x] & ~reservedY[x]));
+      }
+    }
+    DKG_MatrixUtil.embedTypeInfo(ecLevel, maskPattern, matrix);
+  }
+
+}
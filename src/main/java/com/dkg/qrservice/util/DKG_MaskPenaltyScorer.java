@@ -0,0 +1,13 @@
+package com.dkg.qrservice.util;
+
+// Implementation used to score mask candidates, selected with DKG_EncodeHintType.QR_MASK_PENALTY_SCORER.
+// Both return the same penalties and therefore choose the same mask.
+public enum DKG_MaskPenaltyScorer {
+
+  /** Walks the byte matrix cell by cell, see DKG_MaskUtil. */
+  BYTE_MATRIX,
+
+  /** Works on rows and columns packed into long words, see DKG_BitPackedMaskPenalty. */
+  BIT_PACKED,
+
+}
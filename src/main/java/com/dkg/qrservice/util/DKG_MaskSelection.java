@@ -0,0 +1,22 @@
+package com.dkg.qrservice.util;
+
+// Strategy used to pick the mask pattern, selected with DKG_EncodeHintType.QR_MASK_SELECTION. Every
+// strategy picks the same mask; they differ only in how the work is scheduled.
+public enum DKG_MaskSelection {
+
+  /** Score the eight candidates one after another on the calling thread. */
+  EXHAUSTIVE,
+
+  /**
+   * Score the candidates concurrently on the common ForkJoin pool, for versions at or above the
+   * threshold found by DKG_ParallelMaskSelector.calibrate(). Smaller symbols are scored serially.
+   */
+  PARALLEL,
+
+  /**
+   * Score candidates rule by rule and band by band, abandoning each one as soon as it cannot beat the
+   * best so far, see DKG_PruningMaskSelector. Always uses the bit-packed scorer.
+   */
+  PRUNING,
+
+}
@@ -8,6 +8,12 @@ final class DKG_MaskUtil {
   private static final int N3 = 40;
   private static final int N4 = 10;
 
+  // Largest symbol is version 40, 177 x 177 modules.
+  private static final int MAX_DIMENSION = 177;
+
+  // DATA_MASK_BITMAPS[maskPattern][y][x] is 1 where getDataMaskBit(maskPattern, x, y) is true.
+  private static final byte[][][] DATA_MASK_BITMAPS = buildDataMaskBitmaps();
+
   private DKG_MaskUtil() {
     // do nothing
   }
@@ -153,6 +159,27 @@ final class DKG_MaskUtil {
   }
 
 
+  // Row "y" of the bitmap of "maskPattern", covering every symbol dimension. Callers must not
+  // modify the returned array.
+  static byte[] getDataMaskRow(int maskPattern, int y) {
+    return DATA_MASK_BITMAPS[maskPattern][y];
+  }
+
+  private static byte[][][] buildDataMaskBitmaps() {
+    byte[][][] bitmaps = new byte[DKG_QRCode.NUM_MASK_PATTERNS][MAX_DIMENSION][MAX_DIMENSION];
+    for (int maskPattern = 0; maskPattern < DKG_QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+      for (int y = 0; y < MAX_DIMENSION; y++) {
+        byte[] row = bitmaps[maskPattern][y];
+        for (int x = 0; x < MAX_DIMENSION; x++) {
+          if (getDataMaskBit(maskPattern, x, y)) {
+            row[x] = 1;
+          }
+        }
+      }
+    }
+    return bitmaps;
+  }
+
   private static int applyMaskPenaltyRule1Internal(DKG_ByteMatrix matrix, boolean isHorizontal) {
     int penalty = 0;
     int iLimit = isHorizontal ? matrix.getHeight() : matrix.getWidth();
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.OutputStream;
 import java.io.IOException;
 import java.awt.image.BufferedImage;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 
@@ -57,6 +58,12 @@ public final class DKG_MatrixToImageWriter {
 
   public static void writeToPath(DKG_BitMatrix matrix, String format, Path file, DKG_MatrixToImageConfig config)
       throws IOException {
+    if (isPng(format)) {
+      try (OutputStream stream = Files.newOutputStream(file)) {
+        DKG_PngWriter.write(matrix, config, stream);
+      }
+      return;
+    }
     BufferedImage image = toBufferedImage(matrix, config);
     if (!ImageIO.write(image, format, file.toFile())) {
       throw new IOException("Could not write an image of format " + format + " to " + file);
@@ -69,11 +76,90 @@ public final class DKG_MatrixToImageWriter {
   }
 
   public static void writeToStream(DKG_BitMatrix matrix, String format, OutputStream stream, DKG_MatrixToImageConfig config)
-      throws IOException {  
+      throws IOException {
+    if (isPng(format)) {
+      // Two-colour PNGs are written directly, without going through BufferedImage and ImageIO.
+      DKG_PngWriter.write(matrix, config, stream);
+      return;
+    }
     BufferedImage image = toBufferedImage(matrix, config);
     if (!ImageIO.write(image, format, stream)) {
       throw new IOException("Could not write an image of format " + format);
     }
   }
 
+  public static BufferedImage toBufferedImage(DKG_QRCodeRaster raster, DKG_MatrixToImageConfig config) {
+    int width = raster.getWidth();
+    int height = raster.getHeight();
+    BufferedImage image = new BufferedImage(width, height, config.getBufferedImageColorModel());
+    int onColor = config.getPixelOnColor();
+    int offColor = config.getPixelOffColor();
+    int[] rowPixels = new int[width];
+    for (int y = 0; y < height; y++) {
+      int[] row = raster.getRow(y);
+      for (int x = 0; x < width; x++) {
+        rowPixels[x] = ((row[x / 32] >>> (x & 0x1f)) & 1) != 0 ? onColor : offColor;
+      }
+      image.setRGB(0, y, width, 1, rowPixels, 0, width);
+    }
+    return image;
+  }
+
+  public static void writeToStream(DKG_QRCodeRaster raster, String format, OutputStream stream) throws IOException {
+    writeToStream(raster, format, stream, DEFAULT_CONFIG);
+  }
+
+  public static void writeToStream(DKG_QRCodeRaster raster, String format, OutputStream stream, DKG_MatrixToImageConfig config)
+      throws IOException {
+    if (isPng(format)) {
+      DKG_PngWriter.write(raster, config, stream);
+      return;
+    }
+    if (isSvg(format)) {
+      // Vector output from the module matrix; no pixels are rendered.
+      DKG_SvgWriter.write(raster, config, stream);
+      return;
+    }
+    if (DKG_ModuleMatrixWriter.isSupported(format) && raster.getCode() != null) {
+      // The bare module matrix; no pixels are rendered.
+      DKG_EncodeTimer timer = raster.getTimer();
+      if (timer != null) {
+        timer.restart();
+      }
+      int bytes = DKG_ModuleMatrixWriter.write(raster.getCode(), format, stream);
+      if (timer != null) {
+        timer.lap(DKG_EncodeStage.IMAGE_WRITE);
+        timer.addImageBytes(bytes);
+      }
+      return;
+    }
+    DKG_EncodeTimer timer = raster.getTimer();
+    if (timer != null) {
+      timer.restart();
+    }
+    BufferedImage image = toBufferedImage(raster, config);
+    if (timer != null) {
+      timer.lap(DKG_EncodeStage.RENDER);
+    }
+    if (!ImageIO.write(image, format, stream)) {
+      throw new IOException("Could not write an image of format " + format);
+    }
+    if (timer != null) {
+      timer.lap(DKG_EncodeStage.IMAGE_WRITE);
+    }
+  }
+
+  // Formats that carry the bare module matrix, for which the output size is irrelevant.
+  public static boolean isModuleMatrixFormat(String format) {
+    return DKG_ModuleMatrixWriter.isSupported(format);
+  }
+
+  private static boolean isPng(String format) {
+    return "png".equalsIgnoreCase(format);
+  }
+
+  private static boolean isSvg(String format) {
+    return "svg".equalsIgnoreCase(format);
+  }
+
 }
\ No newline at end of file
@@ -109,12 +109,10 @@ final class DKG_MatrixUtil {
                           DKG_Version DKGVersion,
                           int maskPattern,
                           DKG_ByteMatrix matrix) throws DKG_WriterException {
-    clearMatrix(matrix);
-    embedBasicPatterns(DKGVersion, matrix);
+    // Start from the prebuilt function patterns and version info of this version.
+    DKG_FunctionPatternTemplate.forVersion(DKGVersion).copyTo(matrix);
     // Type information appear with any version.
     embedTypeInfo(ecLevel, maskPattern, matrix);
-    // Version info appear if version >= 7.
-    maybeEmbedVersionInfo(DKGVersion, matrix);
     // Data should be embedded at end.
     embedDataBits(dataBits, maskPattern, matrix);
   }
@@ -140,13 +138,17 @@ final class DKG_MatrixUtil {
   // Embed type information. On success, modify the matrix.
   static void embedTypeInfo(DKG_ErrorCorrectionLevel ecLevel, int maskPattern, DKG_ByteMatrix matrix)
       throws DKG_WriterException {
-    DKG_BitArray typeInfoBits = new DKG_BitArray();
-    makeTypeInfoBits(ecLevel, maskPattern, typeInfoBits);
+    if (!DKG_QRCode.isValidMaskPattern(maskPattern)) {
+      throw new DKG_WriterException("Invalid mask pattern");
+    }
+    embedTypeInfoBits(DKG_FunctionPatternTemplate.getTypeInfoBits(ecLevel, maskPattern), matrix);
+  }
 
-    for (int i = 0; i < typeInfoBits.getSize(); ++i) {
-      // Place bits in LSB to MSB order.  LSB (least significant bit) is the last value in
-      // "typeInfoBits".
-      boolean bit = typeInfoBits.get(typeInfoBits.getSize() - 1 - i);
+  // Embed the 15 type information bits of "typeInfoBits", as built by makeTypeInfoBits().
+  static void embedTypeInfoBits(int typeInfoBits, DKG_ByteMatrix matrix) {
+    for (int i = 0; i < 15; ++i) {
+      // Place bits in LSB to MSB order.
+      boolean bit = ((typeInfoBits >>> i) & 1) != 0;
 
       // Type info bits at the left top corner. See 8.9 of JISX0510:2004 (p.46).
       int[] coordinates = TYPE_INFO_COORDINATES[i];
@@ -194,52 +196,12 @@ final class DKG_MatrixUtil {
 
   // Embed "dataBits" using "getMaskPattern". On success, modify the matrix and return true.
   // For debugging purposes, it skips masking process if "getMaskPattern" is -1.
-  // See 8.7 of JISX0510:2004 (p.38) for how to embed data bits.
+  // See 8.7 of JISX0510:2004 (p.38) for how to embed data bits. The zigzag order and the mask bits
+  // of each version are precomputed by DKG_DataPlacement.
   static void embedDataBits(DKG_BitArray dataBits, int maskPattern, DKG_ByteMatrix matrix)
       throws DKG_WriterException {
-    int bitIndex = 0;
-    int direction = -1;
-    // Start from the right bottom cell.
-    int x = matrix.getWidth() - 1;
-    int y = matrix.getHeight() - 1;
-    while (x > 0) {
-      // Skip the vertical timing pattern.
-      if (x == 6) {
-        x -= 1;
-      }
-      while (y >= 0 && y < matrix.getHeight()) {
-        for (int i = 0; i < 2; ++i) {
-          int xx = x - i;
-          // Skip the cell if it's not empty.
-          if (!isEmpty(matrix.get(xx, y))) {
-            continue;
-          }
-          boolean bit;
-          if (bitIndex < dataBits.getSize()) {
-            bit = dataBits.get(bitIndex);
-            ++bitIndex;
-          } else {
-            // Padding bit. If there is no bit left, we'll fill the left cells with 0, as described
-            // in 8.4.9 of JISX0510:2004 (p. 24).
-            bit = false;
-          }
-
-          // Skip masking if mask_pattern is -1.
-          if (maskPattern != -1 && DKG_MaskUtil.getDataMaskBit(maskPattern, xx, y)) {
-            bit = !bit;
-          }
-          matrix.set(xx, y, bit);
-        }
-        y += direction;
-      }
-      direction = -direction;  // Reverse the direction.
-      y += direction;
-      x -= 2;  // Move to the left.
-    }
-    // All bits should be consumed.
-    if (bitIndex != dataBits.getSize()) {
-      throw new DKG_WriterException("Not all bits consumed: " + bitIndex + '/' + dataBits.getSize());
-    }
+    DKG_Version DKGVersion = DKG_Version.getVersionForNumber((matrix.getWidth() - 17) / 4);
+    DKG_DataPlacement.forVersion(DKGVersion).embedDataBits(dataBits, maskPattern, matrix);
   }
 
   // Return the position of the most significant bit set (to one) in the "value". The most
@@ -0,0 +1,88 @@
+package com.dkg.qrservice.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+// Writes a QR code's bare module matrix, without quiet zone or scaling, in one of these formats:
+// "bin":  magic 'Q' 'M', layout version 1, QR version, EC level format bits (L=1, M=0, Q=3, H=2),
+//         mask pattern, size in modules, then size * size bits row by row, most significant bit
+//         first, 1 for dark, padded with zero bits to a whole byte at the end only.
+// "json": {"version", "errorCorrectionLevel", "maskPattern", "size", "modules"} where "modules" is
+//         the packed bits of "bin", base64 encoded.
+// "pbm":  binary portable bitmap (P4), one pixel per module, rows padded to whole bytes.
+final class DKG_ModuleMatrixWriter {
+
+  private static final byte[] MAGIC = {'Q', 'M'};
+  private static final int LAYOUT_VERSION = 1;
+
+  private DKG_ModuleMatrixWriter() {
+  }
+
+  static boolean isSupported(String format) {
+    return "bin".equalsIgnoreCase(format) || "json".equalsIgnoreCase(format) || "pbm".equalsIgnoreCase(format);
+  }
+
+  // Returns the number of bytes written.
+  static int write(DKG_QRCode code, String format, OutputStream stream) throws IOException {
+    if ("pbm".equalsIgnoreCase(format)) {
+      return writePbm(code.getMatrix(), stream);
+    }
+    byte[] modules = pack(code.getMatrix());
+    if ("json".equalsIgnoreCase(format)) {
+      String json = "{\"version\":" + code.getVersion().getVersionNumber()
+          + ",\"errorCorrectionLevel\":\"" + code.getECLevel()
+          + "\",\"maskPattern\":" + code.getMaskPattern()
+          + ",\"size\":" + code.getMatrix().getWidth()
+          + ",\"modules\":\"" + Base64.getEncoder().encodeToString(modules) + "\"}";
+      byte[] bytes = json.getBytes(StandardCharsets.US_ASCII);
+      stream.write(bytes);
+      return bytes.length;
+    }
+    stream.write(MAGIC);
+    stream.write(LAYOUT_VERSION);
+    stream.write(code.getVersion().getVersionNumber());
+    stream.write(code.getECLevel().getBits());
+    stream.write(code.getMaskPattern());
+    stream.write(code.getMatrix().getWidth());
+    stream.write(modules);
+    return MAGIC.length + 5 + modules.length;
+  }
+
+  // All modules as one continuous bit string, row by row.
+  private static byte[] pack(DKG_ByteMatrix matrix) {
+    int size = matrix.getWidth();
+    byte[] packed = new byte[(size * size + 7) / 8];
+    byte[][] rows = matrix.getArray();
+    int bit = 0;
+    for (byte[] row : rows) {
+      for (int x = 0; x < size; x++, bit++) {
+        if (row[x] == 1) {
+          packed[bit >>> 3] |= 0x80 >>> (bit & 7);
+        }
+      }
+    }
+    return packed;
+  }
+
+  private static int writePbm(DKG_ByteMatrix matrix, OutputStream stream) throws IOException {
+    int width = matrix.getWidth();
+    int height = matrix.getHeight();
+    byte[] header = ("P4\n" + width + ' ' + height + '\n').getBytes(StandardCharsets.US_ASCII);
+    stream.write(header);
+    byte[] packedRow = new byte[(width + 7) / 8];
+    for (byte[] row : matrix.getArray()) {
+      Arrays.fill(packedRow, (byte) 0);
+      for (int x = 0; x < width; x++) {
+        if (row[x] == 1) {
+          packedRow[x >>> 3] |= 0x80 >>> (x & 7);
+        }
+      }
+      stream.write(packedRow);
+    }
+    return header.length + height * packedRow.length;
+  }
+
+}
@@ -0,0 +1,158 @@
+package com.dkg.qrservice.util;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Scores the eight mask candidates of large symbols concurrently.
+public final class DKG_ParallelMaskSelector {
+
+  // Never parallelise below this version, whatever the calibration says.
+  static final int MIN_VERSION_THRESHOLD = 20;
+  // Threshold meaning "never parallelise".
+  static final int DISABLED = 41;
+
+  private static final int[] CALIBRATION_VERSIONS = {20, 25, 30, 35, 40};
+  private static final int CALIBRATION_WARMUP_ROUNDS = 20;
+  private static final int CALIBRATION_ROUNDS = 10;
+  // Parallel scoring must beat serial scoring by this factor to be worth it.
+  private static final double REQUIRED_SPEEDUP = 1.25;
+
+  private static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+
+  // 0 until calibrated.
+  private static volatile int versionThreshold;
+
+  private DKG_ParallelMaskSelector() {
+  }
+
+  // Smallest version scored in parallel, calibrating on first use.
+  public static int getVersionThreshold() {
+    int threshold = versionThreshold;
+    return threshold != 0 ? threshold : calibrate();
+  }
+
+  // Time serial and parallel scoring of random payloads at increasing versions and keep the first
+  // version where parallel scoring is clearly faster. Meant to be called once at startup; takes
+  // about a second on many-core hosts and returns immediately when there is a single core.
+  public static synchronized int calibrate() {
+    if (versionThreshold != 0) {
+      return versionThreshold;
+    }
+    int threshold = DISABLED;
+    if (POOL.getParallelism() > 1) {
+      Random random = new Random(0x5152);
+      try {
+        DKG_MaskCandidates[] candidates = new DKG_MaskCandidates[CALIBRATION_VERSIONS.length];
+        for (int i = 0; i < CALIBRATION_VERSIONS.length; i++) {
+          candidates[i] = DKG_MaskCandidates.sample(
+              DKG_Version.getVersionForNumber(CALIBRATION_VERSIONS[i]), DKG_ErrorCorrectionLevel.L, random);
+        }
+        // Warm both paths up first so neither is measured while still interpreted.
+        for (int round = 0; round < CALIBRATION_WARMUP_ROUNDS; round++) {
+          for (int i = 0; i < CALIBRATION_VERSIONS.length; i++) {
+            DKG_Version version = DKG_Version.getVersionForNumber(CALIBRATION_VERSIONS[i]);
+            timeSelection(candidates[i], version, false);
+            timeSelection(candidates[i], version, true);
+          }
+        }
+        for (int i = 0; i < CALIBRATION_VERSIONS.length; i++) {
+          DKG_Version version = DKG_Version.getVersionForNumber(CALIBRATION_VERSIONS[i]);
+          long serialNanos = Long.MAX_VALUE;
+          long parallelNanos = Long.MAX_VALUE;
+          for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+            serialNanos = Math.min(serialNanos, timeSelection(candidates[i], version, false));
+            parallelNanos = Math.min(parallelNanos, timeSelection(candidates[i], version, true));
+          }
+          if (parallelNanos * REQUIRED_SPEEDUP < serialNanos) {
+            threshold = Math.max(CALIBRATION_VERSIONS[i], MIN_VERSION_THRESHOLD);
+            break;
+          }
+        }
+      } catch (DKG_WriterException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    versionThreshold = threshold;
+    return threshold;
+  }
+
+  // Mask pattern with the lowest penalty, ties going to the lowest pattern number like the serial
+  // search does.
+  static int chooseMaskPattern(DKG_MaskCandidates candidates,
+                               DKG_MaskPenaltyScorer scorer,
+                               int dimension) throws DKG_WriterException {
+    MaskPenaltyTask[] tasks = new MaskPenaltyTask[DKG_QRCode.NUM_MASK_PATTERNS];
+    // Fork all but the first candidate and score that one on the calling thread.
+    for (int maskPattern = 1; maskPattern < tasks.length; maskPattern++) {
+      tasks[maskPattern] = new MaskPenaltyTask(candidates, scorer, dimension, maskPattern);
+      POOL.execute(tasks[maskPattern]);
+    }
+    int minPenalty = scoreCandidate(candidates, scorer, dimension, 0);
+    int bestMaskPattern = 0;
+    for (int maskPattern = 1; maskPattern < tasks.length; maskPattern++) {
+      int penalty = tasks[maskPattern].join();
+      if (penalty < minPenalty) {
+        minPenalty = penalty;
+        bestMaskPattern = maskPattern;
+      }
+    }
+    return bestMaskPattern;
+  }
+
+  private static int scoreCandidate(DKG_MaskCandidates candidates,
+                                    DKG_MaskPenaltyScorer scorer,
+                                    int dimension,
+                                    int maskPattern) throws DKG_WriterException {
+    DKG_ByteMatrix scratch = new DKG_ByteMatrix(dimension, dimension);
+    candidates.apply(maskPattern, scratch);
+    DKG_BitPackedMaskPenalty packedPenalty = scorer == DKG_MaskPenaltyScorer.BIT_PACKED
+        ? new DKG_BitPackedMaskPenalty(dimension)
+        : null;
+    return DKG_Encoder.calculateMaskPenalty(scratch, packedPenalty);
+  }
+
+  // Nanoseconds taken by one mask selection over "candidates".
+  private static long timeSelection(DKG_MaskCandidates candidates,
+                                    DKG_Version version,
+                                    boolean parallel) throws DKG_WriterException {
+    int dimension = version.getDimensionForVersion();
+    long start = System.nanoTime();
+    if (parallel) {
+      chooseMaskPattern(candidates, DKG_MaskPenaltyScorer.BIT_PACKED, dimension);
+    } else {
+      DKG_ByteMatrix matrix = new DKG_ByteMatrix(dimension, dimension);
+      DKG_BitPackedMaskPenalty packedPenalty = new DKG_BitPackedMaskPenalty(dimension);
+      for (int maskPattern = 0; maskPattern < DKG_QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+        candidates.apply(maskPattern, matrix);
+        DKG_Encoder.calculateMaskPenalty(matrix, packedPenalty);
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static final class MaskPenaltyTask extends RecursiveTask<Integer> {
+
+    private final DKG_MaskCandidates candidates;
+    private final DKG_MaskPenaltyScorer scorer;
+    private final int dimension;
+    private final int maskPattern;
+
+    MaskPenaltyTask(DKG_MaskCandidates candidates, DKG_MaskPenaltyScorer scorer, int dimension, int maskPattern) {
+      this.candidates = candidates;
+      this.scorer = scorer;
+      this.dimension = dimension;
+      this.maskPattern = maskPattern;
+    }
+
+    @Override
+    protected Integer compute() {
+      try {
+        return scoreCandidate(candidates, scorer, dimension, maskPattern);
+      } catch (DKG_WriterException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+}
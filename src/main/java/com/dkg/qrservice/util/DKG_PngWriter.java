@@ -0,0 +1,190 @@
+package com.dkg.qrservice.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Minimal 1 bit per pixel PNG encoder for two-colour images.
+final class DKG_PngWriter {
+
+  private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+  private static final byte[] IHDR = {'I', 'H', 'D', 'R'};
+  private static final byte[] PLTE = {'P', 'L', 'T', 'E'};
+  private static final byte[] TRNS = {'t', 'R', 'N', 'S'};
+  private static final byte[] IDAT = {'I', 'D', 'A', 'T'};
+  private static final byte[] IEND = {'I', 'E', 'N', 'D'};
+
+  private static final int COLOR_TYPE_GREYSCALE = 0;
+  private static final int COLOR_TYPE_PALETTE = 3;
+  private static final int FILTER_NONE = 0;
+  // Same default level as the JDK's PNG writer; two-colour images gain little from higher levels.
+  private static final int COMPRESSION_LEVEL = 4;
+  private static final int IDAT_BUFFER_SIZE = 32 * 1024;
+
+  private static final ThreadLocal<DKG_PngWriter> WRITERS = ThreadLocal.withInitial(DKG_PngWriter::new);
+
+  private final Deflater deflater = new Deflater(COMPRESSION_LEVEL);
+  private final CRC32 crc = new CRC32();
+  private final byte[] header = new byte[13];
+  private final byte[] intBuffer = new byte[4];
+  private final byte[] idat = new byte[IDAT_BUFFER_SIZE];
+  private int idatLength;
+  private long bytesWritten;
+  private byte[] scanline = new byte[0];
+
+  private DKG_PngWriter() {
+  }
+
+  static void write(DKG_BitMatrix matrix, DKG_MatrixToImageConfig config, OutputStream stream) throws IOException {
+    WRITERS.get().writeImage(matrix.getWidth(), matrix.getHeight(), matrix, null, config, stream);
+  }
+
+  static void write(DKG_QRCodeRaster raster, DKG_MatrixToImageConfig config, OutputStream stream) throws IOException {
+    WRITERS.get().writeImage(raster.getWidth(), raster.getHeight(), null, raster, config, stream);
+  }
+
+  // Exactly one of "matrix" and "raster" supplies the pixels.
+  private void writeImage(int width,
+                          int height,
+                          DKG_BitMatrix matrix,
+                          DKG_QRCodeRaster raster,
+                          DKG_MatrixToImageConfig config,
+                          OutputStream stream) throws IOException {
+    // Raster rows are expanded lazily while writing; time that as RENDER and the rest as IMAGE_WRITE.
+    DKG_EncodeTimer timer = raster != null ? raster.getTimer() : null;
+    if (timer != null) {
+      timer.restart();
+    }
+    int onColor = config.getPixelOnColor();
+    int offColor = config.getPixelOffColor();
+    boolean greyscale = onColor == DKG_MatrixToImageConfig.BLACK && offColor == DKG_MatrixToImageConfig.WHITE;
+
+    stream.write(SIGNATURE);
+    bytesWritten = SIGNATURE.length;
+    writeInt(header, 0, width);
+    writeInt(header, 4, height);
+    header[8] = 1;  // bit depth
+    header[9] = (byte) (greyscale ? COLOR_TYPE_GREYSCALE : COLOR_TYPE_PALETTE);
+    header[10] = 0;  // deflate
+    header[11] = 0;  // adaptive filtering
+    header[12] = 0;  // no interlace
+    writeChunk(stream, IHDR, header, 13);
+    if (!greyscale) {
+      // Index 0 is the "off" colour, index 1 the "on" colour.
+      writeRgb(header, 0, offColor);
+      writeRgb(header, 3, onColor);
+      writeChunk(stream, PLTE, header, 6);
+      if (hasTransparency(onColor) || hasTransparency(offColor)) {
+        header[0] = (byte) (offColor >>> 24);
+        header[1] = (byte) (onColor >>> 24);
+        writeChunk(stream, TRNS, header, 2);
+      }
+    }
+
+    int bytesPerRow = (width + 7) / 8;
+    if (scanline.length < bytesPerRow + 1) {
+      scanline = new byte[bytesPerRow + 1];
+    }
+    scanline[0] = FILTER_NONE;
+    // Greyscale stores 1 for white, so "on" (black) pixels are inverted.
+    int invert = greyscale ? -1 : 0;
+    int rowSize = matrix != null ? matrix.getRowSize() : raster.getRowSize();
+
+    deflater.reset();
+    idatLength = 0;
+    int previousSourceRow = -2;
+    for (int y = 0; y < height; y++) {
+      int[] bits;
+      int offset;
+      if (matrix != null) {
+        bits = matrix.getBits();
+        offset = y * rowSize;
+      } else {
+        int sourceRow = raster.getSourceRow(y);
+        if (sourceRow == previousSourceRow) {
+          // Same module row as the previous scanline: feed the packed bytes again.
+          bits = null;
+          offset = 0;
+        } else {
+          if (timer != null) {
+            timer.lap(DKG_EncodeStage.IMAGE_WRITE);
+          }
+          bits = raster.getRow(y);
+          if (timer != null) {
+            timer.lap(DKG_EncodeStage.RENDER);
+          }
+          offset = 0;
+          previousSourceRow = sourceRow;
+        }
+      }
+      if (bits != null) {
+        for (int i = 0; i < bytesPerRow; i += 4) {
+          // PNG packs pixels MSB first, DKG_BitMatrix LSB first.
+          int word = Integer.reverse(bits[offset + (i >>> 2)] ^ invert);
+          int end = Math.min(4, bytesPerRow - i);
+          for (int j = 0; j < end; j++) {
+            scanline[1 + i + j] = (byte) (word >>> (24 - 8 * j));
+          }
+        }
+      }
+      deflater.setInput(scanline, 0, bytesPerRow + 1);
+      while (!deflater.needsInput()) {
+        deflate(stream);
+      }
+    }
+    deflater.finish();
+    while (!deflater.finished()) {
+      deflate(stream);
+    }
+    if (idatLength > 0) {
+      writeChunk(stream, IDAT, idat, idatLength);
+    }
+    writeChunk(stream, IEND, idat, 0);
+    if (timer != null) {
+      timer.lap(DKG_EncodeStage.IMAGE_WRITE);
+      timer.addImageBytes(bytesWritten);
+    }
+  }
+
+  // Run the deflater into the IDAT buffer, emitting a chunk whenever it fills up.
+  private void deflate(OutputStream stream) throws IOException {
+    idatLength += deflater.deflate(idat, idatLength, idat.length - idatLength);
+    if (idatLength == idat.length) {
+      writeChunk(stream, IDAT, idat, idatLength);
+      idatLength = 0;
+    }
+  }
+
+  private void writeChunk(OutputStream stream, byte[] type, byte[] data, int length) throws IOException {
+    writeInt(intBuffer, 0, length);
+    stream.write(intBuffer);
+    stream.write(type);
+    stream.write(data, 0, length);
+    crc.reset();
+    crc.update(type);
+    crc.update(data, 0, length);
+    writeInt(intBuffer, 0, (int) crc.getValue());
+    stream.write(intBuffer);
+    // Length, type and CRC fields plus the data.
+    bytesWritten += 12 + length;
+  }
+
+  private static void writeInt(byte[] buffer, int offset, int value) {
+    buffer[offset] = (byte) (value >>> 24);
+    buffer[offset + 1] = (byte) (value >>> 16);
+    buffer[offset + 2] = (byte) (value >>> 8);
+    buffer[offset + 3] = (byte) value;
+  }
+
+  private static void writeRgb(byte[] buffer, int offset, int argb) {
+    buffer[offset] = (byte) (argb >>> 16);
+    buffer[offset + 1] = (byte) (argb >>> 8);
+    buffer[offset + 2] = (byte) argb;
+  }
+
+  private static boolean hasTransparency(int argb) {
+    return (argb & 0xFF000000) != 0xFF000000;
+  }
+
+}
@@ -0,0 +1,95 @@
+package com.dkg.qrservice.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Branch-and-bound mask selection that always picks the mask exhaustive scoring picks.
+public final class DKG_PruningMaskSelector {
+
+  // Rows (or columns) scored between two bound checks.
+  private static final int BAND_SIZE = 16;
+
+  private static final LongAdder CANDIDATES_SCORED = new LongAdder();
+  private static final LongAdder CANDIDATES_PRUNED = new LongAdder();
+  private static final LongAdder BANDS_SCORED = new LongAdder();
+  private static final LongAdder BANDS_SKIPPED = new LongAdder();
+
+  private DKG_PruningMaskSelector() {
+  }
+
+  // Choose the mask of the symbol described by "candidates" and leave that candidate in "matrix".
+  static int chooseMaskPattern(DKG_MaskCandidates candidates, DKG_ByteMatrix matrix) throws DKG_WriterException {
+    int dimension = matrix.getWidth();
+    int bandsPerRule = (dimension + BAND_SIZE - 1) / BAND_SIZE;
+    // Rule 4 counts as a single band.
+    int bandsPerCandidate = 1 + 3 * bandsPerRule;
+    DKG_BitPackedMaskPenalty penalty = new DKG_BitPackedMaskPenalty(dimension);
+
+    int minPenalty = Integer.MAX_VALUE;
+    int bestMaskPattern = -1;
+    int bandsScored = 0;
+    int candidatesPruned = 0;
+    for (int maskPattern = 0; maskPattern < DKG_QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+      candidates.apply(maskPattern, matrix);
+      penalty.load(matrix);
+      int bound = penalty.applyMaskPenaltyRule4();
+      int candidateBands = 1;
+      for (int rule = 0; rule < 3 && bound < minPenalty; rule++) {
+        for (int from = 0; from < dimension && bound < minPenalty; from += BAND_SIZE) {
+          int to = Math.min(from + BAND_SIZE, dimension);
+          switch (rule) {
+            case 0:
+              bound += penalty.applyMaskPenaltyRule2(from, to);
+              break;
+            case 1:
+              bound += penalty.applyMaskPenaltyRule1(from, to);
+              break;
+            default:
+              bound += penalty.applyMaskPenaltyRule3(from, to);
+              break;
+          }
+          candidateBands++;
+        }
+      }
+      bandsScored += candidateBands;
+      if (bound < minPenalty) {
+        // Fully scored, so "bound" is the exact penalty.
+        minPenalty = bound;
+        bestMaskPattern = maskPattern;
+      } else if (candidateBands < bandsPerCandidate) {
+        // Candidates that lost only after their last band saved nothing and do not count.
+        candidatesPruned++;
+      }
+    }
+
+    CANDIDATES_SCORED.add(DKG_QRCode.NUM_MASK_PATTERNS);
+    CANDIDATES_PRUNED.add(candidatesPruned);
+    BANDS_SCORED.add(bandsScored);
+    BANDS_SKIPPED.add((long) bandsPerCandidate * DKG_QRCode.NUM_MASK_PATTERNS - bandsScored);
+
+    if (bestMaskPattern != DKG_QRCode.NUM_MASK_PATTERNS - 1) {
+      candidates.apply(bestMaskPattern, matrix);
+    }
+    return bestMaskPattern;
+  }
+
+  // Candidates looked at since startup.
+  public static long getCandidatesScored() {
+    return CANDIDATES_SCORED.sum();
+  }
+
+  // Candidates abandoned before their last band was scored.
+  public static long getCandidatesPruned() {
+    return CANDIDATES_PRUNED.sum();
+  }
+
+  // Row / column bands actually scored (rule 4 counts as one band per candidate).
+  public static long getBandsScored() {
+    return BANDS_SCORED.sum();
+  }
+
+  // Bands that exhaustive scoring would have evaluated but pruning skipped.
+  public static long getBandsSkipped() {
+    return BANDS_SKIPPED.sum();
+  }
+
+}
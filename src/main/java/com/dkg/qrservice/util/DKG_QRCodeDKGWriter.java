@@ -20,6 +20,16 @@ public final class DKG_QRCodeDKGWriter implements DKG_Writer {
                               int width,
                               int height,
                               Map<DKG_EncodeHintType,?> hints) throws DKG_WriterException {
+    return encodeRaster(contents, format, width, height, hints).toBitMatrix();
+  }
+
+  // Like encode(), but returns a raster that renders the scaled output one row at a time instead of
+  // a full-resolution DKG_BitMatrix.
+  public DKG_QRCodeRaster encodeRaster(String contents,
+                                       DKG_BarcodeFormat format,
+                                       int width,
+                                       int height,
+                                       Map<DKG_EncodeHintType,?> hints) throws DKG_WriterException {
 
     if (contents.isEmpty()) {
       throw new IllegalArgumentException("Found empty contents");
@@ -46,41 +56,24 @@ public final class DKG_QRCodeDKGWriter implements DKG_Writer {
     }
 
     DKG_QRCode code = DKG_Encoder.encode(contents, DKGErrorCorrectionLevel, hints);
-    return renderResult(code, width, height, quietZone);
+    DKG_QRCodeRaster raster = renderResult(code, width, height, quietZone);
+    DKG_EncodeTimer timer = hints == null ? null : (DKG_EncodeTimer) hints.get(DKG_EncodeHintType.QR_ENCODE_TIMER);
+    if (timer != null) {
+      timer.lap(DKG_EncodeStage.RENDER);
+      timer.recordOutputSize(raster.getWidth(), raster.getHeight());
+      raster.setTimer(timer);
+    }
+    return raster;
   }
 
-  private static DKG_BitMatrix renderResult(DKG_QRCode code, int width, int height, int quietZone) {
+  private static DKG_QRCodeRaster renderResult(DKG_QRCode code, int width, int height, int quietZone) {
     DKG_ByteMatrix input = code.getMatrix();
     if (input == null) {
       throw new IllegalStateException();
     }
-    int inputWidth = input.getWidth();
-    int inputHeight = input.getHeight();
-    int qrWidth = inputWidth + (quietZone * 2);
-    int qrHeight = inputHeight + (quietZone * 2);
-    int outputWidth = Math.max(width, qrWidth);
-    int outputHeight = Math.max(height, qrHeight);
-
-    int multiple = Math.min(outputWidth / qrWidth, outputHeight / qrHeight);
-    // Padding includes both the quiet zone and the extra white pixels to accommodate the requested
-    // dimensions. For example, if input is 25x25 the QR will be 33x33 including the quiet zone.
-    // If the requested size is 200x160, the multiple will be 4, for a QR of 132x132. These will
-    // handle all the padding from 100x100 (the actual QR) up to 200x160.
-    int leftPadding = (outputWidth - (inputWidth * multiple)) / 2;
-    int topPadding = (outputHeight - (inputHeight * multiple)) / 2;
-
-    DKG_BitMatrix output = new DKG_BitMatrix(outputWidth, outputHeight);
-
-    for (int inputY = 0, outputY = topPadding; inputY < inputHeight; inputY++, outputY += multiple) {
-      // Write the contents of this row of the barcode
-      for (int inputX = 0, outputX = leftPadding; inputX < inputWidth; inputX++, outputX += multiple) {
-        if (input.get(inputX, inputY) == 1) {
-          output.setRegion(outputX, outputY, multiple, multiple);
-        }
-      }
-    }
-
-    return output;
+    DKG_QRCodeRaster raster = new DKG_QRCodeRaster(input, width, height, quietZone);
+    raster.setCode(code);
+    return raster;
   }
 
 }
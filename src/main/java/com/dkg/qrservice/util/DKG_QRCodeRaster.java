@@ -0,0 +1,158 @@
+package com.dkg.qrservice.util;
+
+import java.util.Arrays;
+
+// Scaled rendering of a QR code's module matrix, one output row at a time.
+public final class DKG_QRCodeRaster {
+
+  private final DKG_ByteMatrix input;
+  private final int outputWidth;
+  private final int outputHeight;
+  private final int multiple;
+  private final int leftPadding;
+  private final int topPadding;
+  private final int[] row;
+  // The encoded symbol, when built by DKG_QRCodeDKGWriter.
+  private DKG_QRCode code;
+  // Stage timer from the QR_ENCODE_TIMER hint, or null.
+  private DKG_EncodeTimer timer;
+  // Module row currently expanded in "row", -1 for a blank (padding) row, -2 for none yet.
+  private int expandedRow = -2;
+
+  public DKG_QRCodeRaster(DKG_ByteMatrix input, int width, int height, int quietZone) {
+    this.input = input;
+    int inputWidth = input.getWidth();
+    int inputHeight = input.getHeight();
+    int qrWidth = inputWidth + (quietZone * 2);
+    int qrHeight = inputHeight + (quietZone * 2);
+    outputWidth = Math.max(width, qrWidth);
+    outputHeight = Math.max(height, qrHeight);
+
+    multiple = Math.min(outputWidth / qrWidth, outputHeight / qrHeight);
+    // Padding includes both the quiet zone and the extra white pixels to accommodate the requested
+    // dimensions. For example, if input is 25x25 the QR will be 33x33 including the quiet zone.
+    // If the requested size is 200x160, the multiple will be 4, for a QR of 132x132. These will
+    // handle all the padding from 100x100 (the actual QR) up to 200x160.
+    leftPadding = (outputWidth - (inputWidth * multiple)) / 2;
+    topPadding = (outputHeight - (inputHeight * multiple)) / 2;
+    row = new int[(outputWidth + 31) / 32];
+  }
+
+  public int getWidth() {
+    return outputWidth;
+  }
+
+  public int getHeight() {
+    return outputHeight;
+  }
+
+  // Words per row.
+  public int getRowSize() {
+    return row.length;
+  }
+
+  // Module row shown on output row "y", or -1 if "y" falls in the top or bottom padding. Consecutive
+  // output rows with the same source row are identical.
+  public int getSourceRow(int y) {
+    if (y < topPadding) {
+      return -1;
+    }
+    int moduleRow = (y - topPadding) / multiple;
+    return moduleRow < input.getHeight() ? moduleRow : -1;
+  }
+
+  // Pixels of output row "y" in the DKG_BitMatrix word layout: bit (x & 0x1f) of word x / 32 is
+  // pixel x. The returned buffer is reused by the next call; callers must not modify it.
+  public int[] getRow(int y) {
+    int sourceRow = getSourceRow(y);
+    if (sourceRow != expandedRow) {
+      expandRow(sourceRow);
+      expandedRow = sourceRow;
+    }
+    return row;
+  }
+
+  // The module matrix and the geometry mapping it to pixels: module (x, y) covers pixels
+  // [leftPadding + x * multiple, leftPadding + (x + 1) * multiple) and likewise vertically.
+  DKG_ByteMatrix getModules() {
+    return input;
+  }
+
+  int getMultiple() {
+    return multiple;
+  }
+
+  int getLeftPadding() {
+    return leftPadding;
+  }
+
+  int getTopPadding() {
+    return topPadding;
+  }
+
+  DKG_QRCode getCode() {
+    return code;
+  }
+
+  void setCode(DKG_QRCode code) {
+    this.code = code;
+  }
+
+  DKG_EncodeTimer getTimer() {
+    return timer;
+  }
+
+  void setTimer(DKG_EncodeTimer timer) {
+    this.timer = timer;
+  }
+
+  // Full-resolution rendering, for callers that need a DKG_BitMatrix.
+  public DKG_BitMatrix toBitMatrix() {
+    DKG_BitMatrix output = new DKG_BitMatrix(outputWidth, outputHeight);
+    int[] bits = output.getBits();
+    int rowSize = output.getRowSize();
+    for (int y = 0; y < outputHeight; y++) {
+      System.arraycopy(getRow(y), 0, bits, y * rowSize, rowSize);
+    }
+    if (timer != null) {
+      timer.lap(DKG_EncodeStage.RENDER);
+    }
+    return output;
+  }
+
+  private void expandRow(int sourceRow) {
+    Arrays.fill(row, 0);
+    if (sourceRow < 0) {
+      return;
+    }
+    byte[] modules = input.getArray()[sourceRow];
+    int inputWidth = modules.length;
+    int inputX = 0;
+    while (inputX < inputWidth) {
+      if (modules[inputX] != 1) {
+        inputX++;
+        continue;
+      }
+      // Merge a run of dark modules into one pixel range.
+      int runStart = inputX;
+      while (inputX < inputWidth && modules[inputX] == 1) {
+        inputX++;
+      }
+      setRange(leftPadding + runStart * multiple, leftPadding + inputX * multiple);
+    }
+  }
+
+  // Set pixels [start, end) of the row buffer.
+  private void setRange(int start, int end) {
+    int firstInt = start / 32;
+    int lastInt = (end - 1) / 32;
+    for (int i = firstInt; i <= lastInt; i++) {
+      int firstBit = i > firstInt ? 0 : start & 0x1F;
+      int lastBit = i < lastInt ? 31 : (end - 1) & 0x1F;
+      // Ones from firstBit to lastBit, inclusive
+      int mask = (2 << lastBit) - (1 << firstBit);
+      row[i] |= mask;
+    }
+  }
+
+}
@@ -0,0 +1,30 @@
+package com.dkg.qrservice.util;
+
+// Shared, immutable Reed-Solomon encoders for every QR EC block size (7 to 30 codewords).
+final class DKG_QRGeneratorRegistry {
+
+  static final int MIN_DEGREE = 7;
+  static final int MAX_DEGREE = 30;
+
+  private static final DKG_QRReedSolomonEncoder[] ENCODERS = buildEncoders();
+
+  private DKG_QRGeneratorRegistry() {
+    // do nothing
+  }
+
+  static DKG_QRReedSolomonEncoder getEncoder(int numEcBytesInBlock) {
+    if (numEcBytesInBlock < MIN_DEGREE || numEcBytesInBlock > MAX_DEGREE) {
+      throw new IllegalArgumentException("No QR generator of degree " + numEcBytesInBlock);
+    }
+    return ENCODERS[numEcBytesInBlock - MIN_DEGREE];
+  }
+
+  private static DKG_QRReedSolomonEncoder[] buildEncoders() {
+    DKG_QRReedSolomonEncoder[] encoders = new DKG_QRReedSolomonEncoder[MAX_DEGREE - MIN_DEGREE + 1];
+    for (int degree = MIN_DEGREE; degree <= MAX_DEGREE; degree++) {
+      encoders[degree - MIN_DEGREE] = new DKG_QRReedSolomonEncoder(degree);
+    }
+    return encoders;
+  }
+
+}
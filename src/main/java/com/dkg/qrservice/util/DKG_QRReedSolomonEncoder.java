@@ -0,0 +1,84 @@
+package com.dkg.qrservice.util;
+
+// Reed-Solomon encoder for QR codes, computing EC codewords with a shift register in the caller's buffer.
+final class DKG_QRReedSolomonEncoder {
+
+  private static final DKG_GenericGF FIELD = DKG_GenericGF.QR_CODE_FIELD_256;
+  private static final int FIELD_SIZE = 256;
+
+  // MULTIPLY_TABLE[(a << 8) | b] == a * b in GF(256).
+  private static final byte[] MULTIPLY_TABLE = buildMultiplyTable();
+
+  private final int degree;
+  // Generator coefficients below the (implicit, monic) leading term, highest degree first. Each
+  // entry is pre-shifted by 8 so it can be used directly as a row offset into MULTIPLY_TABLE.
+  private final int[] generatorRows;
+
+  DKG_QRReedSolomonEncoder(int degree) {
+    if (degree <= 0) {
+      throw new IllegalArgumentException("No error correction bytes");
+    }
+    this.degree = degree;
+    int[] generator = buildGenerator(degree);
+    generatorRows = new int[degree];
+    for (int i = 0; i < degree; i++) {
+      generatorRows[i] = generator[i + 1] << 8;
+    }
+  }
+
+  int getDegree() {
+    return degree;
+  }
+
+  // Compute the "degree" EC codewords for data[dataOffset, dataOffset + numDataBytes) and store them
+  // in ec[ecOffset, ecOffset + degree).
+  void encode(byte[] data, int dataOffset, int numDataBytes, byte[] ec, int ecOffset) {
+    if (numDataBytes <= 0) {
+      throw new IllegalArgumentException("No data bytes provided");
+    }
+    int[] generatorRows = this.generatorRows;
+    int last = ecOffset + degree - 1;
+    for (int i = ecOffset; i <= last; i++) {
+      ec[i] = 0;
+    }
+    int dataEnd = dataOffset + numDataBytes;
+    for (int i = dataOffset; i < dataEnd; i++) {
+      // Feedback term: the incoming data byte plus the coefficient shifted out of the register.
+      int factor = (data[i] ^ ec[ecOffset]) & 0xFF;
+      if (factor == 0) {
+        System.arraycopy(ec, ecOffset + 1, ec, ecOffset, degree - 1);
+        ec[last] = 0;
+        continue;
+      }
+      for (int j = ecOffset, g = 0; j < last; j++, g++) {
+        ec[j] = (byte) (ec[j + 1] ^ MULTIPLY_TABLE[generatorRows[g] | factor]);
+      }
+      ec[last] = MULTIPLY_TABLE[generatorRows[degree - 1] | factor];
+    }
+  }
+
+  // Coefficients of prod_{i=0}^{degree-1} (x - a^i), highest degree first.
+  private static int[] buildGenerator(int degree) {
+    int[] generator = new int[degree + 1];
+    generator[0] = 1;
+    for (int d = 0; d < degree; d++) {
+      int root = FIELD.exp(d + FIELD.getGeneratorBase());
+      // Multiply in place by (x + root); walk backwards so each term is read before it is updated.
+      for (int i = d + 1; i > 0; i--) {
+        generator[i] ^= FIELD.multiply(generator[i - 1], root);
+      }
+    }
+    return generator;
+  }
+
+  private static byte[] buildMultiplyTable() {
+    byte[] table = new byte[FIELD_SIZE * FIELD_SIZE];
+    for (int a = 1; a < FIELD_SIZE; a++) {
+      for (int b = 1; b < FIELD_SIZE; b++) {
+        table[(a << 8) | b] = (byte) FIELD.multiply(a, b);
+      }
+    }
+    return table;
+  }
+
+}
@@ -0,0 +1,136 @@
+package com.dkg.qrservice.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+// Streams a QR code as SVG, one path segment per run of dark modules.
+final class DKG_SvgWriter {
+
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  private final OutputStream stream;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int length;
+  private long bytesWritten;
+
+  private DKG_SvgWriter(OutputStream stream) {
+    this.stream = stream;
+  }
+
+  static void write(DKG_QRCodeRaster raster, DKG_MatrixToImageConfig config, OutputStream stream) throws IOException {
+    DKG_EncodeTimer timer = raster.getTimer();
+    if (timer != null) {
+      timer.restart();
+    }
+    DKG_SvgWriter writer = new DKG_SvgWriter(stream);
+    writer.writeDocument(raster, config);
+    writer.flush();
+    if (timer != null) {
+      timer.lap(DKG_EncodeStage.IMAGE_WRITE);
+      timer.addImageBytes(writer.bytesWritten);
+    }
+  }
+
+  private void writeDocument(DKG_QRCodeRaster raster, DKG_MatrixToImageConfig config) throws IOException {
+    int width = raster.getWidth();
+    int height = raster.getHeight();
+    append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" width=\"").append(width)
+        .append("\" height=\"").append(height)
+        .append("\" viewBox=\"0 0 ").append(width).append(' ').append(height)
+        .append("\" shape-rendering=\"crispEdges\">\n");
+
+    int offColor = config.getPixelOffColor();
+    if ((offColor >>> 24) != 0) {
+      append("<rect width=\"").append(width).append("\" height=\"").append(height).append('"');
+      appendFill(offColor);
+      append("/>\n");
+    }
+
+    append("<path transform=\"matrix(").append(raster.getMultiple()).append(" 0 0 ")
+        .append(raster.getMultiple()).append(' ').append(raster.getLeftPadding()).append(' ')
+        .append(raster.getTopPadding()).append(")\"");
+    appendFill(config.getPixelOnColor());
+    append(" d=\"");
+    byte[][] modules = raster.getModules().getArray();
+    for (int y = 0; y < modules.length; y++) {
+      byte[] row = modules[y];
+      int x = 0;
+      while (x < row.length) {
+        if (row[x] != 1) {
+          x++;
+          continue;
+        }
+        // Merge a run of dark modules into one rectangle.
+        int runStart = x;
+        while (x < row.length && row[x] == 1) {
+          x++;
+        }
+        int run = x - runStart;
+        append('M').append(runStart).append(' ').append(y).append('h').append(run)
+            .append("v1h-").append(run).append('z');
+      }
+    }
+    append("\"/>\n</svg>\n");
+  }
+
+  // fill="#rrggbb", plus fill-opacity for translucent colours.
+  private void appendFill(int argb) throws IOException {
+    append(" fill=\"#");
+    for (int shift = 20; shift >= 0; shift -= 4) {
+      append(Character.forDigit((argb >>> shift) & 0xF, 16));
+    }
+    append('"');
+    int alpha = argb >>> 24;
+    if (alpha != 0xFF) {
+      append(" fill-opacity=\"").append(String.format(Locale.ROOT, "%.3f", alpha / 255.0)).append('"');
+    }
+  }
+
+  private DKG_SvgWriter append(String ascii) throws IOException {
+    int i = 0;
+    while (i < ascii.length()) {
+      ensureCapacity(1);
+      int end = Math.min(ascii.length(), i + buffer.length - length);
+      for (; i < end; i++) {
+        buffer[length++] = (byte) ascii.charAt(i);
+      }
+    }
+    return this;
+  }
+
+  private DKG_SvgWriter append(char c) throws IOException {
+    ensureCapacity(1);
+    buffer[length++] = (byte) c;
+    return this;
+  }
+
+  // Non-negative values only.
+  private DKG_SvgWriter append(int value) throws IOException {
+    ensureCapacity(10);
+    int digits = 1;
+    for (int rest = value / 10; rest != 0; rest /= 10) {
+      digits++;
+    }
+    for (int i = length + digits - 1; i >= length; i--) {
+      buffer[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    length += digits;
+    return this;
+  }
+
+  private void ensureCapacity(int needed) throws IOException {
+    if (buffer.length - length < needed) {
+      flush();
+    }
+  }
+
+  private void flush() throws IOException {
+    stream.write(buffer, 0, length);
+    bytesWritten += length;
+    length = 0;
+  }
+
+}
@@ -0,0 +1,114 @@
+package com.dkg.qrservice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Startup benchmark: launches the service repeatedly, with and without the class-data sharing archive
+// built by the "cds" Maven profile, and measures the time from process start to the first successful
+// QR code response and to readiness.
+// Run after "mvn -Pcds package" with:
+// java -cp target/test-classes com.dkg.qrservice.QRCodeStartupBenchmark \
+//     target/qr-service-0.0.1-SNAPSHOT-cds.jar target/cds/qr-service.jsa [runs]
+public final class QRCodeStartupBenchmark {
+
+    private static final long TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    private static final long POLL_MILLIS = 10;
+
+    private QRCodeStartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: QRCodeStartupBenchmark <jar> [shared archive] [runs]");
+            System.exit(2);
+        }
+        String jar = args[0];
+        String archive = args.length > 1 ? args[1] : null;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        System.out.printf("%-10s %22s %22s%n", "", "first response ms", "ready ms");
+        measure("default", jar, null, runs);
+        if (archive != null) {
+            measure("cds", jar, archive, runs);
+        }
+    }
+
+    private static void measure(String label, String jar, String archive, int runs) throws Exception {
+        long[] firstResponse = new long[runs];
+        long[] ready = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            long[] result = startOnce(jar, archive);
+            firstResponse[run] = result[0];
+            ready[run] = result[1];
+        }
+        System.out.printf("%-10s %22s %22s%n", label, summary(firstResponse), summary(ready));
+    }
+
+    // Returns the milliseconds to the first QR code response and to readiness.
+    private static long[] startOnce(String jar, String archive) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + "/bin/java");
+        if (archive != null) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+        }
+        command.add("-jar");
+        command.add(jar);
+        command.add("--server.port=" + port);
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            String base = "http://localhost:" + port;
+            long firstResponse = awaitOk(base + "/downloadQRCodeContent?inputString=startup&width=300&height=300", start);
+            long ready = awaitOk(base + "/actuator/health/readiness", start);
+            return new long[]{firstResponse, ready};
+        } finally {
+            process.destroy();
+            process.waitFor(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static long awaitOk(String url, long start) throws InterruptedException {
+        while (true) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (elapsed > TIMEOUT_MILLIS) {
+                throw new IllegalStateException("No successful response from " + url);
+            }
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                    try (InputStream response = connection.getInputStream()) {
+                        response.transferTo(OutputStream.nullOutputStream());
+                    }
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }
+            } catch (IOException e) {
+                // Not listening yet.
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String summary(long[] millis) {
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        return String.format("min %d / median %d", sorted[0], sorted[sorted.length / 2]);
+    }
+
+}
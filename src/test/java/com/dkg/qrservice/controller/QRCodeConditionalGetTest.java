@@ -0,0 +1,28 @@
+package com.dkg.qrservice.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QRCodeConditionalGetTest {
+
+    @Test
+    void matchesListedStrongAndWeakTags() {
+        assertTrue(QRCodeConditionalGet.isNotModified(List.of("\"qr-abc\""), "qr-abc"));
+        assertTrue(QRCodeConditionalGet.isNotModified(List.of("W/\"qr-abc\""), "qr-abc"));
+        assertTrue(QRCodeConditionalGet.isNotModified(List.of("\"qr-x\", \"qr-abc\""), "qr-abc"));
+        assertTrue(QRCodeConditionalGet.isNotModified(List.of("\"qr-x\"", "\"qr-abc\""), "qr-abc"));
+        assertTrue(QRCodeConditionalGet.isNotModified(List.of("*"), "qr-abc"));
+    }
+
+    @Test
+    void otherRepresentationsDoNotMatch() {
+        assertFalse(QRCodeConditionalGet.isNotModified(List.of(), "qr-abc"));
+        assertFalse(QRCodeConditionalGet.isNotModified(List.of("\"qr-abc\""), "qr-abc-gzip"));
+        assertFalse(QRCodeConditionalGet.isNotModified(List.of("\"qr-abc-gzip\""), "qr-abc"));
+        assertFalse(QRCodeConditionalGet.isNotModified(List.of("\"qr-ab\""), "qr-abc"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.dkg.qrservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QRCodeAdmissionControlTest {
+
+    @Test
+    void overloadLastsUntilHalfTheBudgetIsFree() {
+        QRCodeAdmissionControl admissionControl = new QRCodeAdmissionControl(100, 1);
+        for (int i = 0; i < 3; i++) {
+            admissionControl.acquire(30, true);
+        }
+        assertFalse(admissionControl.isOverloaded());
+
+        assertThrows(QRCodeOverloadedException.class, () -> admissionControl.acquire(30, true));
+        assertTrue(admissionControl.isOverloaded());
+        assertEquals(1, admissionControl.getShedCount());
+
+        admissionControl.release(30);
+        assertTrue(admissionControl.isOverloaded());
+        admissionControl.release(30);
+        assertFalse(admissionControl.isOverloaded());
+        assertEquals(30, admissionControl.getInFlightCost());
+    }
+
+    @Test
+    void unshedWorkIsChargedWithoutOverloading() {
+        QRCodeAdmissionControl admissionControl = new QRCodeAdmissionControl(100, 1);
+        admissionControl.acquire(80, true);
+        admissionControl.acquire(80, false);
+        assertFalse(admissionControl.isOverloaded());
+        assertEquals(160, admissionControl.getInFlightCost());
+        assertEquals(2, admissionControl.getAdmittedCount());
+    }
+}
@@ -0,0 +1,42 @@
+package com.dkg.qrservice.service.impl;
+
+import com.dkg.qrservice.service.QRCodeBatchItem;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QRCodeBatchJsonReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void badItemsBecomeInvalidAndTheBatchContinues() throws IOException {
+        String json = "[{\"content\":\"first\",\"width\":100,\"height\":100},"
+                + "{\"content\":\"second\",\"width\":\"wide\",\"height\":100},"
+                + "42,"
+                + "{\"content\":\"fourth\",\"width\":200,\"height\":150,\"errorCorrection\":\"H\"}]";
+        QRCodeBatchJsonReader reader = new QRCodeBatchJsonReader(objectMapper,
+                objectMapper.readerFor(JsonNode.class).readValues(json));
+        List<QRCodeBatchItem> items = new ArrayList<>();
+        reader.forEachRemaining(items::add);
+
+        assertEquals(4, items.size());
+        assertNull(items.get(0).getParseError());
+        assertEquals("first", items.get(0).getContent());
+        assertNotNull(items.get(1).getParseError());
+        assertTrue(items.get(1).getParseError().startsWith("Item 2: "), items.get(1).getParseError());
+        assertTrue(items.get(2).getParseError().startsWith("Item 3: "), items.get(2).getParseError());
+        assertNull(items.get(3).getParseError());
+        assertEquals(200, items.get(3).getWidth());
+        assertEquals("H", items.get(3).getErrorCorrection());
+    }
+}
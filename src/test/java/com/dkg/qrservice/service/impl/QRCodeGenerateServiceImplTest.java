@@ -0,0 +1,95 @@
+package com.dkg.qrservice.service.impl;
+
+import com.dkg.qrservice.service.QRCodeAdmissionControl;
+import com.dkg.qrservice.service.QRCodeEncodeMetrics;
+import com.dkg.qrservice.service.QRCodeInvalidRequestException;
+import com.dkg.qrservice.service.QRCodeRequestKey;
+import com.dkg.qrservice.util.DKG_ErrorCorrectionLevel;
+import com.dkg.qrservice.util.DKG_MaskSelection;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QRCodeGenerateServiceImplTest {
+
+    @Test
+    void cancelledWaiterDoesNotFailTheSharedRender() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Cache<QRCodeRequestKey, byte[]> cache = Caffeine.newBuilder().build();
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            QRCodeGenerateServiceImpl service = new QRCodeGenerateServiceImpl(cache, executor,
+                    new QRCodeAdmissionControl(0, 1),
+                    new QRCodeEncodeMetrics(registry, false), DKG_MaskSelection.PRUNING, 4000);
+            service.bindTo(registry);
+
+            // Holds the only pool thread, so the asynchronous waiter's render stays queued.
+            CountDownLatch poolBlocked = new CountDownLatch(1);
+            executor.execute(() -> {
+                try {
+                    poolBlocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            CompletableFuture<byte[]> waiter = service.getQRCodeImageAsync("coalesced", 200, 200);
+
+            // A synchronous caller joins the queued render, claims it, and is cancelled while rendering.
+            Thread.currentThread().interrupt();
+            try {
+                assertThrows(InterruptedIOException.class, () -> service.getQRCodeImage("coalesced", 200, 200));
+            } finally {
+                Thread.interrupted();
+            }
+            assertFalse(waiter.isCompletedExceptionally());
+
+            poolBlocked.countDown();
+            byte[] pngData = waiter.get(30, TimeUnit.SECONDS);
+            assertNotNull(ImageIO.read(new ByteArrayInputStream(pngData)));
+            assertSame(pngData, service.getQRCodeImage("coalesced", 200, 200));
+            assertEquals(1.0, registry.get("qr.render.count").functionCounter().count());
+            assertEquals(1.0, registry.get("qr.render.coalesced").functionCounter().count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void batchItemsBypassTheCacheAndShareTheSizeLimit() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Cache<QRCodeRequestKey, byte[]> cache = Caffeine.newBuilder().build();
+            QRCodeGenerateServiceImpl service = new QRCodeGenerateServiceImpl(cache, executor,
+                    new QRCodeAdmissionControl(0, 1),
+                    new QRCodeEncodeMetrics(new SimpleMeterRegistry(), false), DKG_MaskSelection.PRUNING, 400);
+
+            byte[] pngData = service.getQRCodeImage("batch item", 200, 200, DKG_ErrorCorrectionLevel.M);
+            assertNotNull(ImageIO.read(new ByteArrayInputStream(pngData)));
+            assertTrue(cache.asMap().isEmpty());
+
+            assertThrows(QRCodeInvalidRequestException.class,
+                    () -> service.getQRCodeImage("batch item", 401, 200, DKG_ErrorCorrectionLevel.M));
+            assertThrows(QRCodeInvalidRequestException.class, () -> service.getQRCodeImage("get", 200, 401));
+            assertThrows(QRCodeInvalidRequestException.class, () -> service.getQRCodeETag("get", -1, 200));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
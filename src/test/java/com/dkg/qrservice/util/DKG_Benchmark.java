@@ -0,0 +1,31 @@
+package com.dkg.qrservice.util;
+
+// Warm-up and timing loop shared by the util benchmarks.
+final class DKG_Benchmark {
+
+  // One benchmark round; the result is accumulated so the JIT cannot drop the work.
+  interface Round<E extends Exception> {
+    int run() throws E;
+  }
+
+  private DKG_Benchmark() {
+  }
+
+  // Runs "round" warmupRounds times, then returns the nanoseconds taken by measuredRounds more.
+  static <E extends Exception> long time(int warmupRounds, int measuredRounds, Round<E> round) throws E {
+    int sink = 0;
+    for (int i = 0; i < warmupRounds; i++) {
+      sink += round.run();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < measuredRounds; i++) {
+      sink += round.run();
+    }
+    long elapsed = System.nanoTime() - start;
+    if (sink == 42) {
+      System.out.print("");
+    }
+    return elapsed;
+  }
+
+}
@@ -0,0 +1,59 @@
+package com.dkg.qrservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Every rule of the bit-packed scorer must return exactly the DKG_MaskUtil value, for all eight mask
+// candidates of every version and for unstructured matrices of every dimension.
+class DKG_BitPackedMaskPenaltyTest {
+
+  @Test
+  void matchesMaskUtilForEveryMaskAndVersion() throws DKG_WriterException {
+    Random random = new Random(42);
+    for (int versionNumber = 1; versionNumber <= 40; versionNumber++) {
+      DKG_Version version = DKG_Version.getVersionForNumber(versionNumber);
+      DKG_MaskCandidates maskCandidates = DKG_MaskCandidates.sample(version, DKG_ErrorCorrectionLevel.M, random);
+      int dimension = version.getDimensionForVersion();
+      DKG_BitPackedMaskPenalty packed = new DKG_BitPackedMaskPenalty(dimension);
+      DKG_ByteMatrix candidate = new DKG_ByteMatrix(dimension, dimension);
+      for (int maskPattern = 0; maskPattern < DKG_QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+        maskCandidates.apply(maskPattern, candidate);
+        assertSameRules(candidate, packed, "version " + versionNumber + " mask " + maskPattern);
+      }
+    }
+  }
+
+  @Test
+  void matchesMaskUtilForRandomMatrices() {
+    Random random = new Random(7);
+    for (int versionNumber = 1; versionNumber <= 40; versionNumber++) {
+      int dimension = DKG_Version.getVersionForNumber(versionNumber).getDimensionForVersion();
+      DKG_BitPackedMaskPenalty packed = new DKG_BitPackedMaskPenalty(dimension);
+      // Sparse, balanced and dense matrices exercise runs, blocks and the dark module ratio.
+      for (int darkPercent : new int[] {5, 50, 95}) {
+        DKG_ByteMatrix matrix = new DKG_ByteMatrix(dimension, dimension);
+        for (int y = 0; y < dimension; y++) {
+          for (int x = 0; x < dimension; x++) {
+            matrix.set(x, y, random.nextInt(100) < darkPercent);
+          }
+        }
+        assertSameRules(matrix, packed, "dimension " + dimension + ", " + darkPercent + "% dark");
+      }
+    }
+  }
+
+  private static void assertSameRules(DKG_ByteMatrix matrix, DKG_BitPackedMaskPenalty packed, String message) {
+    packed.load(matrix);
+    assertEquals(DKG_MaskUtil.applyMaskPenaltyRule1(matrix), packed.applyMaskPenaltyRule1(), message + ", rule 1");
+    assertEquals(DKG_MaskUtil.applyMaskPenaltyRule2(matrix), packed.applyMaskPenaltyRule2(), message + ", rule 2");
+    assertEquals(DKG_MaskUtil.applyMaskPenaltyRule3(matrix), packed.applyMaskPenaltyRule3(), message + ", rule 3");
+    assertEquals(DKG_MaskUtil.applyMaskPenaltyRule4(matrix), packed.applyMaskPenaltyRule4(), message + ", rule 4");
+    assertEquals(DKG_MaskUtil.applyMaskPenaltyRule1(matrix) + DKG_MaskUtil.applyMaskPenaltyRule2(matrix)
+            + DKG_MaskUtil.applyMaskPenaltyRule3(matrix) + DKG_MaskUtil.applyMaskPenaltyRule4(matrix),
+        packed.calculateMaskPenalty(matrix), message + ", total");
+  }
+
+}
@@ -0,0 +1,126 @@
+package com.dkg.qrservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The cached placement must fill data cells exactly like the zigzag walk of 8.7 of JISX0510:2004 run
+// on a freshly built matrix, for every version and mask, including -1 (no mask) and padding bits.
+class DKG_DataPlacementTest {
+
+  @Test
+  void matchesZigzagWalkForEveryVersionAndMask() throws DKG_WriterException {
+    Random random = new Random(42);
+    for (int versionNumber = 1; versionNumber <= 40; versionNumber++) {
+      DKG_Version version = DKG_Version.getVersionForNumber(versionNumber);
+      DKG_DataPlacement placement = DKG_DataPlacement.forVersion(version);
+      int numModules = placement.getNumModules();
+      // Full capacity, and data that leaves the remainder to padding bits.
+      for (int numBits : new int[] {numModules, numModules / 2 + 3}) {
+        DKG_BitArray dataBits = new DKG_BitArray();
+        for (int i = 0; i < numBits; i++) {
+          dataBits.appendBit(random.nextBoolean());
+        }
+        for (int maskPattern = -1; maskPattern < DKG_QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+          DKG_ByteMatrix expected = functionPatterns(version);
+          embedByWalk(dataBits, maskPattern, expected);
+
+          DKG_ByteMatrix actual = functionPatterns(version);
+          placement.embedDataBits(dataBits, maskPattern, actual);
+
+          String message = "version " + versionNumber + ", " + numBits + " bits, mask " + maskPattern;
+          for (int y = 0; y < expected.getHeight(); y++) {
+            assertArrayEquals(expected.getArray()[y], actual.getArray()[y], message + ", row " + y);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void numModulesIsTheDataCapacity() throws DKG_WriterException {
+    for (int versionNumber = 1; versionNumber <= 40; versionNumber++) {
+      DKG_Version version = DKG_Version.getVersionForNumber(versionNumber);
+      DKG_ByteMatrix matrix = functionPatterns(version);
+      int emptyCells = 0;
+      for (byte[] row : matrix.getArray()) {
+        for (byte cell : row) {
+          if (cell == -1) {
+            emptyCells++;
+          }
+        }
+      }
+      assertEquals(emptyCells, DKG_DataPlacement.forVersion(version).getNumModules(), "version " + versionNumber);
+      // Codewords plus up to seven remainder bits.
+      assertEquals(version.getTotalCodewords(), emptyCells / 8, "codewords of version " + versionNumber);
+    }
+  }
+
+  @Test
+  void isCachedPerVersion() {
+    DKG_Version version = DKG_Version.getVersionForNumber(10);
+    assertSame(DKG_DataPlacement.forVersion(version), DKG_DataPlacement.forVersion(version));
+  }
+
+  @Test
+  void rejectsMoreBitsThanDataCells() {
+    DKG_Version version = DKG_Version.getVersionForNumber(1);
+    DKG_DataPlacement placement = DKG_DataPlacement.forVersion(version);
+    DKG_BitArray dataBits = new DKG_BitArray();
+    for (int i = 0; i <= placement.getNumModules(); i++) {
+      dataBits.appendBit(true);
+    }
+    assertThrows(DKG_WriterException.class, () -> placement.embedDataBits(dataBits, 0, functionPatterns(version)));
+  }
+
+  // A freshly built symbol without data: function patterns, type info and version info.
+  private static DKG_ByteMatrix functionPatterns(DKG_Version version) throws DKG_WriterException {
+    int dimension = version.getDimensionForVersion();
+    DKG_ByteMatrix matrix = new DKG_ByteMatrix(dimension, dimension);
+    DKG_MatrixUtil.clearMatrix(matrix);
+    DKG_MatrixUtil.embedBasicPatterns(version, matrix);
+    DKG_MatrixUtil.embedTypeInfo(DKG_ErrorCorrectionLevel.L, 0, matrix);
+    DKG_MatrixUtil.maybeEmbedVersionInfo(version, matrix);
+    return matrix;
+  }
+
+  // The data embedding that walked the symbol for every request, before placements were cached.
+  private static void embedByWalk(DKG_BitArray dataBits, int maskPattern, DKG_ByteMatrix matrix) {
+    int bitIndex = 0;
+    int direction = -1;
+    int x = matrix.getWidth() - 1;
+    int y = matrix.getHeight() - 1;
+    while (x > 0) {
+      if (x == 6) {
+        x -= 1;
+      }
+      while (y >= 0 && y < matrix.getHeight()) {
+        for (int i = 0; i < 2; ++i) {
+          int xx = x - i;
+          if (matrix.get(xx, y) != -1) {
+            continue;
+          }
+          boolean bit = false;
+          if (bitIndex < dataBits.getSize()) {
+            bit = dataBits.get(bitIndex);
+            ++bitIndex;
+          }
+          if (maskPattern != -1 && DKG_MaskUtil.getDataMaskBit(maskPattern, xx, y)) {
+            bit = !bit;
+          }
+          matrix.set(xx, y, bit);
+        }
+        y += direction;
+      }
+      direction = -direction;
+      y += direction;
+      x -= 2;
+    }
+  }
+
+}
@@ -0,0 +1,105 @@
+package com.dkg.qrservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// A template copy plus type info must equal a matrix built from scratch by embedding the function
+// patterns, type info and version info one by one, as buildMatrix() did before templates.
+class DKG_FunctionPatternTemplateTest {
+
+  // Type info cells at the left top corner, as in DKG_MatrixUtil.
+  private static final int[][] TYPE_INFO_COORDINATES = {
+      {8, 0}, {8, 1}, {8, 2}, {8, 3}, {8, 4}, {8, 5}, {8, 7}, {8, 8},
+      {7, 8}, {5, 8}, {4, 8}, {3, 8}, {2, 8}, {1, 8}, {0, 8},
+  };
+
+  @Test
+  void copyMatchesFreshlyBuiltFunctionPatterns() throws DKG_WriterException {
+    for (int versionNumber = 1; versionNumber <= 40; versionNumber++) {
+      DKG_Version version = DKG_Version.getVersionForNumber(versionNumber);
+      int dimension = version.getDimensionForVersion();
+      DKG_FunctionPatternTemplate template = DKG_FunctionPatternTemplate.forVersion(version);
+      assertEquals(dimension, template.getDimension(), "dimension of version " + versionNumber);
+      for (DKG_ErrorCorrectionLevel ecLevel : DKG_ErrorCorrectionLevel.values()) {
+        for (int maskPattern = 0; maskPattern < DKG_QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+          DKG_ByteMatrix expected = buildFresh(version, ecLevel, maskPattern);
+
+          DKG_ByteMatrix actual = new DKG_ByteMatrix(dimension, dimension);
+          // Whatever the matrix held before is overwritten.
+          actual.clear((byte) 1);
+          template.copyTo(actual);
+          DKG_MatrixUtil.embedTypeInfo(ecLevel, maskPattern, actual);
+
+          String message = "version " + versionNumber + ' ' + ecLevel + " mask " + maskPattern;
+          for (int y = 0; y < dimension; y++) {
+            assertArrayEquals(expected.getArray()[y], actual.getArray()[y], message + ", row " + y);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void reservedCellsAreExactlyTheFunctionModules() throws DKG_WriterException {
+    for (int versionNumber = 1; versionNumber <= 40; versionNumber++) {
+      DKG_Version version = DKG_Version.getVersionForNumber(versionNumber);
+      DKG_ByteMatrix fresh = buildFresh(version, DKG_ErrorCorrectionLevel.L, 0);
+      DKG_FunctionPatternTemplate template = DKG_FunctionPatternTemplate.forVersion(version);
+      int dimension = version.getDimensionForVersion();
+      for (int y = 0; y < dimension; y++) {
+        byte[] reserved = template.getReservedRow(y);
+        for (int x = 0; x < dimension; x++) {
+          assertEquals(fresh.get(x, y) != -1 ? 1 : 0, reserved[x],
+              "version " + versionNumber + " cell (" + x + ", " + y + ')');
+        }
+      }
+    }
+  }
+
+  @Test
+  void typeInfoBitsMatchMakeTypeInfoBits() throws DKG_WriterException {
+    for (DKG_ErrorCorrectionLevel ecLevel : DKG_ErrorCorrectionLevel.values()) {
+      for (int maskPattern = 0; maskPattern < DKG_QRCode.NUM_MASK_PATTERNS; maskPattern++) {
+        DKG_BitArray bits = new DKG_BitArray();
+        DKG_MatrixUtil.makeTypeInfoBits(ecLevel, maskPattern, bits);
+        int expected = 0;
+        for (int i = 0; i < bits.getSize(); i++) {
+          expected = (expected << 1) | (bits.get(i) ? 1 : 0);
+        }
+        assertEquals(expected, DKG_FunctionPatternTemplate.getTypeInfoBits(ecLevel, maskPattern),
+            ecLevel + " mask " + maskPattern);
+      }
+    }
+  }
+
+  // Function patterns, type info and version info embedded into an empty matrix; data cells stay -1.
+  private static DKG_ByteMatrix buildFresh(DKG_Version version, DKG_ErrorCorrectionLevel ecLevel, int maskPattern)
+      throws DKG_WriterException {
+    int dimension = version.getDimensionForVersion();
+    DKG_ByteMatrix matrix = new DKG_ByteMatrix(dimension, dimension);
+    DKG_MatrixUtil.clearMatrix(matrix);
+    DKG_MatrixUtil.embedBasicPatterns(version, matrix);
+    embedTypeInfo(ecLevel, maskPattern, matrix);
+    DKG_MatrixUtil.maybeEmbedVersionInfo(version, matrix);
+    return matrix;
+  }
+
+  // The type info embedding that computed the bits for every symbol, before they were precomputed.
+  private static void embedTypeInfo(DKG_ErrorCorrectionLevel ecLevel, int maskPattern, DKG_ByteMatrix matrix)
+      throws DKG_WriterException {
+    DKG_BitArray typeInfoBits = new DKG_BitArray();
+    DKG_MatrixUtil.makeTypeInfoBits(ecLevel, maskPattern, typeInfoBits);
+    for (int i = 0; i < typeInfoBits.getSize(); ++i) {
+      boolean bit = typeInfoBits.get(typeInfoBits.getSize() - 1 - i);
+      matrix.set(TYPE_INFO_COORDINATES[i][0], TYPE_INFO_COORDINATES[i][1], bit);
+      if (i < 8) {
+        matrix.set(matrix.getWidth() - i - 1, 8, bit);
+      } else {
+        matrix.set(8, matrix.getHeight() - 7 + (i - 8), bit);
+      }
+    }
+  }
+
+}
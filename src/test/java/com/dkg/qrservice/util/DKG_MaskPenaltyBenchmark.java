@@ -0,0 +1,91 @@
+package com.dkg.qrservice.util;
+
+import java.util.Random;
+
+// Benchmark comparing the byte matrix mask penalty rules (DKG_MaskUtil) with the bit-packed scorer
+// (DKG_BitPackedMaskPenalty) on all eight mask candidates of versions 1, 10, 25 and 40. Every rule
+// is checked for identical results before timing.
+// Run with: java -cp target/classes:target/test-classes com.dkg.qrservice.util.DKG_MaskPenaltyBenchmark
+public final class DKG_MaskPenaltyBenchmark {
+
+  private static final int[] VERSIONS = {1, 10, 25, 40};
+  private static final int WARMUP_ROUNDS = 500;
+  private static final int MEASURED_ROUNDS = 2_000;
+
+  private DKG_MaskPenaltyBenchmark() {
+  }
+
+  public static void main(String[] args) throws DKG_WriterException {
+    Random random = new Random(42);
+    System.out.printf("%8s %16s %16s %8s%n", "version", "byte ns/mask", "packed ns/mask", "speedup");
+    for (int versionNumber : VERSIONS) {
+      DKG_ByteMatrix[] candidates = buildCandidates(versionNumber, random);
+      int dimension = candidates[0].getWidth();
+      DKG_BitPackedMaskPenalty packed = new DKG_BitPackedMaskPenalty(dimension);
+      for (int maskPattern = 0; maskPattern < candidates.length; maskPattern++) {
+        verify(versionNumber, maskPattern, candidates[maskPattern], packed);
+      }
+
+      long byteNanos = DKG_Benchmark.time(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+        int penalty = 0;
+        for (DKG_ByteMatrix candidate : candidates) {
+          penalty += scoreByteMatrix(candidate);
+        }
+        return penalty;
+      });
+      long packedNanos = DKG_Benchmark.time(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+        int penalty = 0;
+        for (DKG_ByteMatrix candidate : candidates) {
+          penalty += packed.calculateMaskPenalty(candidate);
+        }
+        return penalty;
+      });
+      double rounds = (double) MEASURED_ROUNDS * candidates.length;
+      System.out.printf("%8d %16.1f %16.1f %7.1fx%n",
+          versionNumber, byteNanos / rounds, packedNanos / rounds, (double) byteNanos / packedNanos);
+    }
+  }
+
+  // The eight mask candidates of a random byte mode payload that fills "versionNumber" at EC level L.
+  private static DKG_ByteMatrix[] buildCandidates(int versionNumber, Random random) throws DKG_WriterException {
+    DKG_Version version = DKG_Version.getVersionForNumber(versionNumber);
+    DKG_MaskCandidates maskCandidates = DKG_MaskCandidates.sample(version, DKG_ErrorCorrectionLevel.L, random);
+    int dimension = version.getDimensionForVersion();
+    DKG_ByteMatrix[] candidates = new DKG_ByteMatrix[DKG_QRCode.NUM_MASK_PATTERNS];
+    for (int maskPattern = 0; maskPattern < candidates.length; maskPattern++) {
+      candidates[maskPattern] = new DKG_ByteMatrix(dimension, dimension);
+      maskCandidates.apply(maskPattern, candidates[maskPattern]);
+    }
+    return candidates;
+  }
+
+  private static void verify(int versionNumber, int maskPattern, DKG_ByteMatrix matrix, DKG_BitPackedMaskPenalty packed) {
+    packed.load(matrix);
+    int[] expected = {
+        DKG_MaskUtil.applyMaskPenaltyRule1(matrix),
+        DKG_MaskUtil.applyMaskPenaltyRule2(matrix),
+        DKG_MaskUtil.applyMaskPenaltyRule3(matrix),
+        DKG_MaskUtil.applyMaskPenaltyRule4(matrix),
+    };
+    int[] actual = {
+        packed.applyMaskPenaltyRule1(),
+        packed.applyMaskPenaltyRule2(),
+        packed.applyMaskPenaltyRule3(),
+        packed.applyMaskPenaltyRule4(),
+    };
+    for (int rule = 0; rule < expected.length; rule++) {
+      if (expected[rule] != actual[rule]) {
+        throw new IllegalStateException("Rule " + (rule + 1) + " differs for version " + versionNumber +
+            " mask " + maskPattern + ": " + expected[rule] + " != " + actual[rule]);
+      }
+    }
+  }
+
+  private static int scoreByteMatrix(DKG_ByteMatrix matrix) {
+    return DKG_MaskUtil.applyMaskPenaltyRule1(matrix)
+        + DKG_MaskUtil.applyMaskPenaltyRule2(matrix)
+        + DKG_MaskUtil.applyMaskPenaltyRule3(matrix)
+        + DKG_MaskUtil.applyMaskPenaltyRule4(matrix);
+  }
+
+}
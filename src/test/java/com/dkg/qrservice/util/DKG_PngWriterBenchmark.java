@@ -0,0 +1,88 @@
+package com.dkg.qrservice.util;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+// Benchmark comparing PNG output through BufferedImage + ImageIO with the direct two-colour writer
+// (DKG_PngWriter) at typical sizes, for the default and a palette colour configuration. Each output
+// of the direct writer is decoded with ImageIO and checked pixel by pixel first.
+// Run with: java -cp target/classes:target/test-classes com.dkg.qrservice.util.DKG_PngWriterBenchmark
+public final class DKG_PngWriterBenchmark {
+
+  private static final int[] SIZES = {300, 600, 1000};
+  private static final DKG_MatrixToImageConfig[] CONFIGS = {
+      new DKG_MatrixToImageConfig(),
+      new DKG_MatrixToImageConfig(0xFF000002, 0xFFFFC041),
+      new DKG_MatrixToImageConfig(0xFF102030, 0x00FFFFFF),
+  };
+  private static final int WARMUP_ROUNDS = 50;
+  private static final int MEASURED_ROUNDS = 200;
+
+  private DKG_PngWriterBenchmark() {
+  }
+
+  public static void main(String[] args) throws DKG_WriterException, IOException {
+    String content = "https://example.com/product/8412345678905?utm_source=print&utm_medium=label&utm_campaign=spring";
+    DKG_QRCodeDKGWriter writer = new DKG_QRCodeDKGWriter();
+    System.out.printf("%6s %8s %12s %12s %8s %10s %10s%n",
+        "size", "config", "imageio us", "direct us", "speedup", "imageio B", "direct B");
+    for (int size : SIZES) {
+      DKG_BitMatrix matrix = writer.encode(content, DKG_BarcodeFormat.QR_CODE, size, size);
+      for (int c = 0; c < CONFIGS.length; c++) {
+        DKG_MatrixToImageConfig config = CONFIGS[c];
+        byte[] imageIo = writeWithImageIO(matrix, config);
+        byte[] direct = writeDirect(matrix, config);
+        verify(matrix, config, direct);
+
+        long imageIoNanos = DKG_Benchmark.time(WARMUP_ROUNDS, MEASURED_ROUNDS,
+            () -> writeWithImageIO(matrix, config).length);
+        long directNanos = DKG_Benchmark.time(WARMUP_ROUNDS, MEASURED_ROUNDS,
+            () -> writeDirect(matrix, config).length);
+        System.out.printf("%6d %8d %12.1f %12.1f %7.1fx %10d %10d%n",
+            size, c,
+            imageIoNanos / 1000.0 / MEASURED_ROUNDS,
+            directNanos / 1000.0 / MEASURED_ROUNDS,
+            (double) imageIoNanos / directNanos,
+            imageIo.length, direct.length);
+      }
+    }
+  }
+
+  private static void verify(DKG_BitMatrix matrix, DKG_MatrixToImageConfig config, byte[] png) throws IOException {
+    BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+    if (decoded.getWidth() != matrix.getWidth() || decoded.getHeight() != matrix.getHeight()) {
+      throw new IllegalStateException("Dimensions differ");
+    }
+    int onColor = config.getPixelOnColor();
+    int offColor = config.getPixelOffColor();
+    for (int y = 0; y < matrix.getHeight(); y++) {
+      for (int x = 0; x < matrix.getWidth(); x++) {
+        int expected = matrix.get(x, y) ? onColor : offColor;
+        if (decoded.getRGB(x, y) != expected) {
+          throw new IllegalStateException("Pixel (" + x + ", " + y + ") differs: " +
+              Integer.toHexString(decoded.getRGB(x, y)) + " != " + Integer.toHexString(expected));
+        }
+      }
+    }
+  }
+
+  // The path DKG_MatrixToImageWriter.writeToStream used before the direct writer.
+  private static byte[] writeWithImageIO(DKG_BitMatrix matrix, DKG_MatrixToImageConfig config) throws IOException {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    BufferedImage image = DKG_MatrixToImageWriter.toBufferedImage(matrix, config);
+    if (!ImageIO.write(image, "PNG", stream)) {
+      throw new IOException("Could not write PNG");
+    }
+    return stream.toByteArray();
+  }
+
+  private static byte[] writeDirect(DKG_BitMatrix matrix, DKG_MatrixToImageConfig config) throws IOException {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    DKG_MatrixToImageWriter.writeToStream(matrix, "PNG", stream, config);
+    return stream.toByteArray();
+  }
+
+}
@@ -0,0 +1,78 @@
+package com.dkg.qrservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// PNGs from the direct writer, decoded with ImageIO, must reproduce the matrix pixel for pixel in
+// greyscale, palette and translucent palette form, both from a DKG_BitMatrix and from a raster.
+class DKG_PngWriterTest {
+
+  private static final DKG_MatrixToImageConfig[] CONFIGS = {
+      new DKG_MatrixToImageConfig(),
+      new DKG_MatrixToImageConfig(0xFF000002, 0xFFFFC041),
+      new DKG_MatrixToImageConfig(0xFF102030, 0x00FFFFFF),
+  };
+
+  // Widths around byte and word boundaries, and a typical symbol.
+  private static final int[][] DIMENSIONS = {{1, 1}, {7, 3}, {8, 8}, {9, 5}, {33, 40}, {64, 2}, {65, 65}, {177, 90}};
+
+  @Test
+  void bitMatrixDecodesPixelForPixel() throws IOException {
+    Random random = new Random(42);
+    for (int[] dimension : DIMENSIONS) {
+      DKG_BitMatrix matrix = new DKG_BitMatrix(dimension[0], dimension[1]);
+      for (int y = 0; y < matrix.getHeight(); y++) {
+        for (int x = 0; x < matrix.getWidth(); x++) {
+          if (random.nextBoolean()) {
+            matrix.set(x, y);
+          }
+        }
+      }
+      for (DKG_MatrixToImageConfig config : CONFIGS) {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        DKG_MatrixToImageWriter.writeToStream(matrix, "png", png, config);
+        assertDecodesTo(matrix, config, png.toByteArray());
+      }
+    }
+  }
+
+  @Test
+  void rasterDecodesPixelForPixel() throws DKG_WriterException, IOException {
+    DKG_QRCodeDKGWriter writer = new DKG_QRCodeDKGWriter();
+    String content = "https://example.com/product/8412345678905?utm_source=print&utm_medium=label";
+    for (int size : new int[] {10, 100, 301, 1000}) {
+      for (DKG_MatrixToImageConfig config : CONFIGS) {
+        DKG_BitMatrix expected = writer.encode(content, DKG_BarcodeFormat.QR_CODE, size, size);
+        DKG_QRCodeRaster raster = writer.encodeRaster(content, DKG_BarcodeFormat.QR_CODE, size, size, null);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        DKG_MatrixToImageWriter.writeToStream(raster, "png", png, config);
+        assertDecodesTo(expected, config, png.toByteArray());
+      }
+    }
+  }
+
+  private static void assertDecodesTo(DKG_BitMatrix matrix, DKG_MatrixToImageConfig config, byte[] png)
+      throws IOException {
+    BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+    assertNotNull(decoded);
+    assertEquals(matrix.getWidth(), decoded.getWidth(), "width");
+    assertEquals(matrix.getHeight(), decoded.getHeight(), "height");
+    for (int y = 0; y < matrix.getHeight(); y++) {
+      for (int x = 0; x < matrix.getWidth(); x++) {
+        int expected = matrix.get(x, y) ? config.getPixelOnColor() : config.getPixelOffColor();
+        assertEquals(Integer.toHexString(expected), Integer.toHexString(decoded.getRGB(x, y)),
+            matrix.getWidth() + "x" + matrix.getHeight() + " pixel (" + x + ", " + y + ')');
+      }
+    }
+  }
+
+}
@@ -0,0 +1,115 @@
+package com.dkg.qrservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Branch-and-bound selection must pick exactly the mask exhaustive scoring with DKG_MaskUtil picks,
+// the lowest index among equal penalties included, and leave that candidate in the matrix.
+class DKG_PruningMaskSelectorTest {
+
+  @Test
+  void picksTheExhaustiveMaskForEveryVersion() throws DKG_WriterException {
+    Random random = new Random(42);
+    for (int versionNumber = 1; versionNumber <= 40; versionNumber++) {
+      DKG_Version version = DKG_Version.getVersionForNumber(versionNumber);
+      for (DKG_ErrorCorrectionLevel ecLevel : DKG_ErrorCorrectionLevel.values()) {
+        assertPicksExhaustiveMask(version, ecLevel, DKG_MaskCandidates.sampleDataBits(version, ecLevel, random));
+      }
+    }
+  }
+
+  @Test
+  void breaksTiesTowardsTheLowestMask() throws DKG_WriterException {
+    // Symbols whose lowest penalty is shared by several masks; the search is bounded and must find
+    // enough of them to make the check meaningful.
+    Random random = new Random(7);
+    DKG_Version version = DKG_Version.getVersionForNumber(1);
+    int ties = 0;
+    for (int attempt = 0; attempt < 20_000 && ties < 20; attempt++) {
+      DKG_BitArray dataBits = DKG_MaskCandidates.sampleDataBits(version, DKG_ErrorCorrectionLevel.L, random);
+      int[] penalties = penalties(version, DKG_ErrorCorrectionLevel.L, dataBits);
+      int best = lowestPenaltyMask(penalties);
+      boolean tied = false;
+      for (int maskPattern = best + 1; maskPattern < penalties.length; maskPattern++) {
+        tied |= penalties[maskPattern] == penalties[best];
+      }
+      if (tied) {
+        ties++;
+        assertPicksExhaustiveMask(version, DKG_ErrorCorrectionLevel.L, dataBits);
+      }
+    }
+    assertEquals(20, ties, "tied symbols found");
+  }
+
+  @Test
+  void countsOnlyCandidatesAbandonedBeforeTheirLastBand() throws DKG_WriterException {
+    Random random = new Random(11);
+    DKG_Version version = DKG_Version.getVersionForNumber(25);
+    long scoredBefore = DKG_PruningMaskSelector.getCandidatesScored();
+    long prunedBefore = DKG_PruningMaskSelector.getCandidatesPruned();
+    long skippedBefore = DKG_PruningMaskSelector.getBandsSkipped();
+    DKG_BitArray dataBits = DKG_MaskCandidates.sampleDataBits(version, DKG_ErrorCorrectionLevel.Q, random);
+    DKG_ByteMatrix matrix = new DKG_ByteMatrix(version.getDimensionForVersion(), version.getDimensionForVersion());
+    DKG_PruningMaskSelector.chooseMaskPattern(
+        new DKG_MaskCandidates(dataBits, DKG_ErrorCorrectionLevel.Q, version), matrix);
+
+    // Other tests may select masks concurrently, so only relations that always hold are checked.
+    long scored = DKG_PruningMaskSelector.getCandidatesScored() - scoredBefore;
+    long pruned = DKG_PruningMaskSelector.getCandidatesPruned() - prunedBefore;
+    long skipped = DKG_PruningMaskSelector.getBandsSkipped() - skippedBefore;
+    assertTrue(scored >= DKG_QRCode.NUM_MASK_PATTERNS, "candidates scored");
+    assertTrue(pruned < scored, "the first candidate is never pruned");
+    // Every abandoned candidate skipped at least one band.
+    assertTrue(skipped >= pruned, "bands skipped " + skipped + " < candidates pruned " + pruned);
+  }
+
+  private static void assertPicksExhaustiveMask(DKG_Version version, DKG_ErrorCorrectionLevel ecLevel,
+                                                DKG_BitArray dataBits) throws DKG_WriterException {
+    int dimension = version.getDimensionForVersion();
+    int expected = lowestPenaltyMask(penalties(version, ecLevel, dataBits));
+
+    DKG_MaskCandidates candidates = new DKG_MaskCandidates(dataBits, ecLevel, version);
+    DKG_ByteMatrix matrix = new DKG_ByteMatrix(dimension, dimension);
+    int actual = DKG_PruningMaskSelector.chooseMaskPattern(candidates, matrix);
+    String message = "version " + version.getVersionNumber() + ' ' + ecLevel;
+    assertEquals(expected, actual, message);
+
+    DKG_ByteMatrix expectedMatrix = new DKG_ByteMatrix(dimension, dimension);
+    candidates.apply(expected, expectedMatrix);
+    for (int y = 0; y < dimension; y++) {
+      assertArrayEquals(expectedMatrix.getArray()[y], matrix.getArray()[y], message + ", row " + y);
+    }
+  }
+
+  // Penalty of each mask candidate, scored cell by cell with DKG_MaskUtil.
+  private static int[] penalties(DKG_Version version, DKG_ErrorCorrectionLevel ecLevel, DKG_BitArray dataBits)
+      throws DKG_WriterException {
+    int dimension = version.getDimensionForVersion();
+    DKG_ByteMatrix matrix = new DKG_ByteMatrix(dimension, dimension);
+    int[] penalties = new int[DKG_QRCode.NUM_MASK_PATTERNS];
+    for (int maskPattern = 0; maskPattern < penalties.length; maskPattern++) {
+      DKG_MatrixUtil.buildMatrix(dataBits, ecLevel, version, maskPattern, matrix);
+      penalties[maskPattern] = DKG_MaskUtil.applyMaskPenaltyRule1(matrix)
+          + DKG_MaskUtil.applyMaskPenaltyRule2(matrix)
+          + DKG_MaskUtil.applyMaskPenaltyRule3(matrix)
+          + DKG_MaskUtil.applyMaskPenaltyRule4(matrix);
+    }
+    return penalties;
+  }
+
+  private static int lowestPenaltyMask(int[] penalties) {
+    int best = 0;
+    for (int maskPattern = 1; maskPattern < penalties.length; maskPattern++) {
+      if (penalties[maskPattern] < penalties[best]) {
+        best = maskPattern;
+      }
+    }
+    return best;
+  }
+
+}
@@ -0,0 +1,83 @@
+package com.dkg.qrservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+// The table-driven shift register must produce the same EC codewords as the polynomial-division
+// encoder (DKG_ReedSolomonEncoder) for every RS block shape of every version and EC level.
+class DKG_QRReedSolomonEncoderTest {
+
+  @Test
+  void matchesPolynomialDivisionForEveryBlockShape() {
+    Random random = new Random(42);
+    for (int versionNumber = 1; versionNumber <= 40; versionNumber++) {
+      DKG_Version version = DKG_Version.getVersionForNumber(versionNumber);
+      for (DKG_ErrorCorrectionLevel ecLevel : DKG_ErrorCorrectionLevel.values()) {
+        DKG_Version.ECBlocks ecBlocks = version.getECBlocksForLevel(ecLevel);
+        int numEcBytes = ecBlocks.getECCodewordsPerBlock();
+        for (DKG_Version.ECB ecb : ecBlocks.getECBlocks()) {
+          byte[] data = new byte[ecb.getDataCodewords()];
+          random.nextBytes(data);
+          byte[] actual = new byte[numEcBytes];
+          DKG_QRGeneratorRegistry.getEncoder(numEcBytes).encode(data, 0, data.length, actual, 0);
+          assertArrayEquals(encodeByDivision(data, numEcBytes), actual,
+              "version " + versionNumber + ' ' + ecLevel + " block " + data.length + '/' + numEcBytes);
+        }
+      }
+    }
+  }
+
+  @Test
+  void matchesPolynomialDivisionForEdgeCaseData() {
+    for (int numEcBytes = DKG_QRGeneratorRegistry.MIN_DEGREE; numEcBytes <= DKG_QRGeneratorRegistry.MAX_DEGREE;
+         numEcBytes++) {
+      byte[] zeros = new byte[20];
+      byte[] ones = new byte[20];
+      Arrays.fill(ones, (byte) 0xFF);
+      for (byte[] data : new byte[][] {zeros, ones}) {
+        byte[] actual = new byte[numEcBytes];
+        DKG_QRGeneratorRegistry.getEncoder(numEcBytes).encode(data, 0, data.length, actual, 0);
+        assertArrayEquals(encodeByDivision(data, numEcBytes), actual, "degree " + numEcBytes);
+      }
+    }
+  }
+
+  @Test
+  void honoursDataAndEcOffsets() {
+    Random random = new Random(7);
+    byte[] buffer = new byte[64];
+    random.nextBytes(buffer);
+    int dataOffset = 5;
+    int numDataBytes = 40;
+    int numEcBytes = 18;
+    int ecOffset = 3;
+
+    byte[] ec = new byte[ecOffset + numEcBytes + 2];
+    DKG_QRGeneratorRegistry.getEncoder(numEcBytes).encode(buffer, dataOffset, numDataBytes, ec, ecOffset);
+
+    byte[] expected = encodeByDivision(Arrays.copyOfRange(buffer, dataOffset, dataOffset + numDataBytes), numEcBytes);
+    assertArrayEquals(expected, Arrays.copyOfRange(ec, ecOffset, ecOffset + numEcBytes), "EC codewords");
+    // Nothing is written outside the EC range.
+    assertArrayEquals(new byte[ecOffset], Arrays.copyOfRange(ec, 0, ecOffset), "before the EC codewords");
+    assertArrayEquals(new byte[2], Arrays.copyOfRange(ec, ecOffset + numEcBytes, ec.length), "after the EC codewords");
+  }
+
+  // The encoding path DKG_Encoder used before the shift register engine.
+  private static byte[] encodeByDivision(byte[] data, int numEcBytes) {
+    int[] toEncode = new int[data.length + numEcBytes];
+    for (int i = 0; i < data.length; i++) {
+      toEncode[i] = data[i] & 0xFF;
+    }
+    new DKG_ReedSolomonEncoder(DKG_GenericGF.QR_CODE_FIELD_256).encode(toEncode, numEcBytes);
+    byte[] ecBytes = new byte[numEcBytes];
+    for (int i = 0; i < numEcBytes; i++) {
+      ecBytes[i] = (byte) toEncode[data.length + i];
+    }
+    return ecBytes;
+  }
+
+}
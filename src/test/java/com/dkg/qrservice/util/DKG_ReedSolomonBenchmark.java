@@ -0,0 +1,76 @@
+package com.dkg.qrservice.util;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Microbenchmark comparing the polynomial-division encoder (DKG_ReedSolomonEncoder) with the
+// table-driven shift register (DKG_QRReedSolomonEncoder) for every RS block shape QR codes use.
+// Run with: java -cp target/classes:target/test-classes com.dkg.qrservice.util.DKG_ReedSolomonBenchmark
+public final class DKG_ReedSolomonBenchmark {
+
+  private static final int WARMUP_ROUNDS = 20_000;
+  private static final int MEASURED_ROUNDS = 100_000;
+
+  private DKG_ReedSolomonBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    // Distinct (data codewords, EC codewords) block shapes across all versions and EC levels.
+    Set<Long> shapes = new TreeSet<>();
+    for (int versionNumber = 1; versionNumber <= 40; versionNumber++) {
+      DKG_Version version = DKG_Version.getVersionForNumber(versionNumber);
+      for (DKG_ErrorCorrectionLevel ecLevel : DKG_ErrorCorrectionLevel.values()) {
+        DKG_Version.ECBlocks ecBlocks = version.getECBlocksForLevel(ecLevel);
+        for (DKG_Version.ECB ecb : ecBlocks.getECBlocks()) {
+          shapes.add(((long) ecBlocks.getECCodewordsPerBlock() << 32) | ecb.getDataCodewords());
+        }
+      }
+    }
+
+    Random random = new Random(42);
+    System.out.printf("%6s %6s %14s %14s %8s%n", "data", "ec", "division ns", "lfsr ns", "speedup");
+    for (long shape : shapes) {
+      int numEcBytes = (int) (shape >>> 32);
+      int numDataBytes = (int) shape;
+      byte[] data = new byte[numDataBytes];
+      random.nextBytes(data);
+
+      byte[] expected = encodeByDivision(data, numEcBytes);
+      byte[] actual = new byte[numEcBytes];
+      DKG_QRReedSolomonEncoder encoder = DKG_QRGeneratorRegistry.getEncoder(numEcBytes);
+      encoder.encode(data, 0, numDataBytes, actual, 0);
+      if (!Arrays.equals(expected, actual)) {
+        throw new IllegalStateException("EC codewords differ for block " + numDataBytes + '/' + numEcBytes);
+      }
+
+      long divisionNanos = DKG_Benchmark.time(WARMUP_ROUNDS, MEASURED_ROUNDS,
+          () -> encodeByDivision(data, numEcBytes)[0]);
+      long lfsrNanos = DKG_Benchmark.time(WARMUP_ROUNDS, MEASURED_ROUNDS, () -> {
+        encoder.encode(data, 0, numDataBytes, actual, 0);
+        return actual[0];
+      });
+      System.out.printf("%6d %6d %14.1f %14.1f %7.1fx%n",
+          numDataBytes, numEcBytes,
+          (double) divisionNanos / MEASURED_ROUNDS,
+          (double) lfsrNanos / MEASURED_ROUNDS,
+          (double) divisionNanos / lfsrNanos);
+    }
+  }
+
+  // The encoding path DKG_Encoder used before the shift register engine.
+  private static byte[] encodeByDivision(byte[] data, int numEcBytes) {
+    int[] toEncode = new int[data.length + numEcBytes];
+    for (int i = 0; i < data.length; i++) {
+      toEncode[i] = data[i] & 0xFF;
+    }
+    new DKG_ReedSolomonEncoder(DKG_GenericGF.QR_CODE_FIELD_256).encode(toEncode, numEcBytes);
+    byte[] ecBytes = new byte[numEcBytes];
+    for (int i = 0; i < numEcBytes; i++) {
+      ecBytes[i] = (byte) toEncode[data.length + i];
+    }
+    return ecBytes;
+  }
+
+}